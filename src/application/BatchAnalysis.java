@@ -0,0 +1,42 @@
+package application;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import chess.analysis.BatchAnalyzer;
+import chess.metrics.Metrics;
+
+// Usage: BatchAnalysis <input.fen> <output.tsv> [depth] [threads] [nodes] [unordered]
+// Resumes from <output.tsv>.checkpoint when it exists.
+public class BatchAnalysis {
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if (args.length < 2) {
+			System.out.println("Usage: BatchAnalysis <input.fen> <output.tsv> [depth] [threads] [nodes] [unordered]");
+			return;
+		}
+		if (Metrics.ENABLED) {
+			Metrics.registerMBeans();
+		}
+		Path output = Paths.get(args[1]);
+		BatchAnalyzer analyzer = new BatchAnalyzer(Paths.get(args[0]), output);
+		if (args.length > 2) {
+			analyzer.setDepth(Integer.parseInt(args[2]));
+		}
+		if (args.length > 3) {
+			analyzer.setThreads(Integer.parseInt(args[3]));
+		}
+		if (args.length > 4) {
+			analyzer.setNodeLimit(Long.parseLong(args[4]));
+		}
+		analyzer.setOrdered(args.length <= 5 || !args[5].equals("unordered"));
+		analyzer.setCheckpoint(output.resolveSibling(output.getFileName() + ".checkpoint"), 10_000);
+		analyzer.setProgress(System.out, 10_000);
+		analyzer.run();
+		System.out.println(analyzer);
+		if (Metrics.ENABLED) {
+			System.out.print(Metrics.dumpText());
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package application;
+
+import java.lang.management.ManagementFactory;
+import java.util.SplittableRandom;
+
+import chess.ChessMatch;
+import chess.MatchPool;
+import chess.MoveList;
+
+// Usage: MatchChurnBenchmark [games] [plies per game]
+// Bytes allocated and time per game when every game gets a new ChessMatch, when one match is
+// reset between games, and when matches go through a MatchPool. Each game plays the same random
+// legal moves, so the three runs do the same work apart from how they get their match.
+public class MatchChurnBenchmark {
+
+	private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+	public static void main(String[] args) {
+		int games = (args.length > 0) ? Integer.parseInt(args[0]) : 20_000;
+		int plies = (args.length > 1) ? Integer.parseInt(args[1]) : 20;
+		MoveList moves = new MoveList();
+
+		// the first rounds warm up the JIT, the last one is reported
+		for (int round = 0; round < 3; round++) {
+			boolean report = round == 2;
+			run("new ChessMatch()", games, report, () -> {
+				ChessMatch match = new ChessMatch();
+				play(match, moves, plies);
+			});
+			ChessMatch reused = new ChessMatch();
+			run("reset()", games, report, () -> {
+				reused.reset();
+				play(reused, moves, plies);
+			});
+			MatchPool pool = new MatchPool(16);
+			run("MatchPool", games, report, () -> {
+				ChessMatch match = pool.acquire();
+				play(match, moves, plies);
+				pool.release(match);
+			});
+		}
+	}
+
+	private static void run(String name, int games, boolean report, Runnable game) {
+		long thread = Thread.currentThread().getId();
+		long allocated = THREADS.getThreadAllocatedBytes(thread);
+		long start = System.nanoTime();
+		for (int i = 0; i < games; i++) {
+			seed = i;
+			game.run();
+		}
+		long nanos = System.nanoTime() - start;
+		allocated = THREADS.getThreadAllocatedBytes(thread) - allocated;
+		if (report) {
+			System.out.printf("%-18s %8.0f bytes/game  %8.2f us/game%n", name, (double)allocated / games, nanos / 1e3 / games);
+		}
+	}
+
+	private static long seed;
+
+	private static void play(ChessMatch match, MoveList moves, int plies) {
+		SplittableRandom random = new SplittableRandom(seed);
+		for (int i = 0; i < plies; i++) {
+			moves.clear();
+			match.generateLegalMoves(moves);
+			if (moves.isEmpty()) {
+				return;
+			}
+			match.makeMove(moves.get(random.nextInt(moves.size())));
+		}
+	}
+}
@@ -0,0 +1,35 @@
+package application;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import chess.metrics.Metrics;
+import chess.selfplay.SelfPlay;
+
+// Usage: SelfPlayGames <output.bin> <games> [random|weighted|search] [start-positions.fen]
+public class SelfPlayGames {
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if (args.length < 2) {
+			System.out.println("Usage: SelfPlayGames <output.bin> <games> [random|weighted|search] [start-positions.fen]");
+			return;
+		}
+		if (Metrics.ENABLED) {
+			Metrics.registerMBeans();
+		}
+		SelfPlay selfPlay = new SelfPlay();
+		if (args.length > 2) {
+			selfPlay.setPolicy(SelfPlay.Policy.valueOf(args[2].toUpperCase()));
+		}
+		if (args.length > 3) {
+			selfPlay.setStartPositions(Files.readAllLines(Paths.get(args[3]), StandardCharsets.UTF_8));
+		}
+		selfPlay.run(Paths.get(args[0]), Long.parseLong(args[1]));
+		System.out.println(selfPlay);
+		if (Metrics.ENABLED) {
+			System.out.print(Metrics.dumpText());
+		}
+	}
+}
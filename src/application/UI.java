@@ -72,7 +72,7 @@ public class UI {
 			String s = sc.nextLine();
 			char column = s.charAt(0);
 			int row = Integer.parseInt(s.substring(1));
-			return new ChessPosition(column, row);
+			return ChessPosition.of(column, row);
 		}
 		catch (RuntimeException e) {
 			throw new InputMismatchException("Error reading ChessPosition. Valid values are from a1 to h8");
@@ -128,15 +128,18 @@ public class UI {
 		printCapturedPieces(captured);
 		System.out.println();
 		System.out.println("Turn: " + chessMatch.getTurn());
-		if (!chessMatch.getCheckMate()) {
+		if (!chessMatch.isGameOver()) {
 			System.out.println("Waiting player: " + chessMatch.getCurrentPlayer());
 			if (chessMatch.getCheck()) {
 				System.out.println("CHECK!");
 			}
 		}
+		else if (chessMatch.getWinner() != null) {
+			System.out.println(chessMatch.getCheckMate() ? "CHECKMATE!" : "TIME FORFEIT!");
+			System.out.println("Winner: " + chessMatch.getWinner());
+		}
 		else {
-			System.out.println("CHECKMATE!");
-			System.out.println("Winner: " + chessMatch.getCurrentPlayer());
+			System.out.println("DRAW: " + chessMatch.getGameState());
 		}
 	}
 }
@@ -2,9 +2,25 @@ package boardgame;
 
 public class Board {
 	
+	// Occupies every padding square of the mailbox, so ray walks stop on it without bounds checks.
+	public static final Piece OFF_BOARD = new Piece(null) {
+		@Override
+		public boolean[][] possibleMoves() {
+			return new boolean[0][0];
+		}
+	};
+	
+	// Padding around the playing area: one column on each side and two rows above and below,
+	// enough for a knight jump from any edge square to land on a sentinel.
+	private static final int PADDING_COLUMNS = 1;
+	private static final int PADDING_ROWS = 2;
+	
 	private Integer rows;
 	private Integer columns;
-	private Piece[][] pieces;
+	private int width;
+	private Piece[] squares;
+	private int[] rowOf;
+	private int[] columnOf;
 	
 	public Board(Integer rows, Integer columns) {
 		if (rows < 1 || columns < 1) {
@@ -12,7 +28,18 @@ public class Board {
 		}
 		this.rows = rows;
 		this.columns = columns;
-		pieces = new Piece[rows][columns];
+		width = columns + 2 * PADDING_COLUMNS;
+		int size = width * (rows + 2 * PADDING_ROWS);
+		squares = new Piece[size];
+		rowOf = new int[size];
+		columnOf = new int[size];
+		for (int sq = 0; sq < size; sq++) {
+			rowOf[sq] = sq / width - PADDING_ROWS;
+			columnOf[sq] = sq % width - PADDING_COLUMNS;
+			if (!positionExists(rowOf[sq], columnOf[sq])) {
+				squares[sq] = OFF_BOARD;
+			}
+		}
 	}
 
 	public Integer getRows() {
@@ -22,42 +49,92 @@ public class Board {
 	public Integer getColumns() {
 		return columns;
 	}
+	
+	// Distance between vertically adjacent squares in the mailbox; a step north is -width.
+	public int getWidth() {
+		return width;
+	}
+	
+	public int square(int row, int column) {
+		return (row + PADDING_ROWS) * width + column + PADDING_COLUMNS;
+	}
+	
+	public int square(Position position) {
+		return square(position.getRow(), position.getColumn());
+	}
+	
+	public Position position(int square) {
+		return Position.of(rowOf[square], columnOf[square]);
+	}
+	
+	public int rowOf(int square) {
+		return rowOf[square];
+	}
+	
+	public int columnOf(int square) {
+		return columnOf[square];
+	}
+	
+	// Unchecked access for move generation: returns null for an empty square and OFF_BOARD
+	// for padding. Any square reachable in one step from a board square is valid.
+	public Piece pieceAt(int square) {
+		return squares[square];
+	}
 
 	public Piece piece(int row, int column) {
 		if (!positionExists(row, column)) {
 			throw new BoardException("Position not on the board");
 		}
-		return pieces[row][column];
+		return squares[square(row, column)];
 	}
 	
 	public Piece piece(Position position) {
 		if (!positionExists(position)) {
 			throw new BoardException("Position not on the board");
 		}
-		return pieces[position.getRow()][position.getColumn()];
+		return squares[square(position)];
 	}
 	
 	public void placePiece (Piece piece, Position position) {
 		if (thereIsAPiece(position)) {
 			throw new BoardException("There is already a piece on position " + position);
 		}
-		pieces[position.getRow()][position.getColumn()] = piece;
-		piece.position = position;
+		int sq = square(position);
+		squares[sq] = piece;
+		piece.position = Position.of(position.getRow(), position.getColumn());
+		piece.square = sq;
 	}
 	
 	public Piece removePiece(Position position) {
 		if (!positionExists(position)) {
 			throw new BoardException("Position not on the board");
 		}
-		if (piece(position) == null) {
+		int sq = square(position);
+		Piece aux = squares[sq];
+		if (aux == null) {
 			return null;
 		}
-		Piece aux = piece (position);
 		aux.position = null;
-		pieces[position.getRow()][position.getColumn()] = null;
+		squares[sq] = null;
 		return aux; 
 	}
 	
+	// Unchecked mailbox variants for callers that already know the square is a free board square.
+	public void placePiece(Piece piece, int square) {
+		squares[square] = piece;
+		piece.position = Position.of(rowOf[square], columnOf[square]);
+		piece.square = square;
+	}
+	
+	public Piece removePiece(int square) {
+		Piece aux = squares[square];
+		if (aux != null) {
+			aux.position = null;
+			squares[square] = null;
+		}
+		return aux;
+	}
+	
 	public boolean positionExists(int row, int column) {
 		return row >= 0 && row < rows && column >= 0 && column < columns;
 	}
@@ -70,7 +147,7 @@ public class Board {
 		if (!positionExists(position)) {
 			throw new BoardException("Position not on the board");
 		}
-		return piece(position) != null;
+		return squares[square(position)] != null;
 	}
 	
 	
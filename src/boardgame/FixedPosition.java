@@ -0,0 +1,18 @@
+package boardgame;
+
+final class FixedPosition extends Position {
+
+	FixedPosition(int row, int column) {
+		super(row, column);
+	}
+
+	@Override
+	public void setRow(int row) {
+		throw new UnsupportedOperationException("Shared positions are immutable");
+	}
+
+	@Override
+	public void setColumn(int column) {
+		throw new UnsupportedOperationException("Shared positions are immutable");
+	}
+}
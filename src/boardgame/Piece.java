@@ -3,6 +3,7 @@ package boardgame;
 public abstract class Piece {
 
 	protected Position position;
+	protected int square;
 	private Board board;
 	
 	public Piece(Board board) {
@@ -14,6 +15,11 @@ public abstract class Piece {
 		return board;
 	}
 	
+	// Mailbox index of the piece on its board, valid while the piece is placed.
+	public int getSquare() {
+		return square;
+	}
+	
 	public abstract boolean [][] possibleMoves();
 	
 	public boolean possibleMove(Position position) {
@@ -23,7 +29,7 @@ public abstract class Piece {
 	public boolean isThereAnyPossibleMove() {
 		boolean[][] mat = possibleMoves();
 		for (int i = 0; i < mat.length; i++) {
-			for (int j = 0; j < mat.length; j++) {
+			for (int j = 0; j < mat[i].length; j++) {
 				if (mat[i][j]) {
 					return true;
 				}
@@ -2,6 +2,17 @@ package boardgame;
 
 public class Position {
 
+	private static final int CACHED_SIZE = 16;
+	private static final Position[] CACHE = new Position[CACHED_SIZE * CACHED_SIZE];
+	
+	static {
+		for (int i = 0; i < CACHED_SIZE; i++) {
+			for (int j = 0; j < CACHED_SIZE; j++) {
+				CACHE[i * CACHED_SIZE + j] = new FixedPosition(i, j);
+			}
+		}
+	}
+
 	private int row;
 	private int column;
 	
@@ -14,6 +25,14 @@ public class Position {
 		this.column = column;
 	}
 
+	// Canonical immutable instance; shared for the squares of any board up to 16x16.
+	public static Position of(int row, int column) {
+		if (row >= 0 && row < CACHED_SIZE && column >= 0 && column < CACHED_SIZE) {
+			return CACHE[row * CACHED_SIZE + column];
+		}
+		return new FixedPosition(row, column);
+	}
+
 	public int getRow() {
 		return row;
 	}
@@ -0,0 +1,10 @@
+package chess;
+
+// Told about every piece put on or taken off the board, in make, unmake and promotion alike,
+// so that incremental state outside ChessMatch can follow the position. Squares are 0-63, a8 = 0.
+public interface BoardObserver {
+
+	void pieceAdded(ChessPiece piece, int square);
+
+	void pieceRemoved(ChessPiece piece, int square);
+}
@@ -2,37 +2,222 @@ package chess;
 
 import java.security.InvalidParameterException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicLong;
 
 import boardgame.Board;
 import boardgame.Piece;
 import boardgame.Position;
+import chess.clock.GameClock;
+import chess.metrics.CacheProbeEvent;
+import chess.metrics.Metrics;
+import chess.metrics.MoveAppliedEvent;
 import chess.pieces.Bishop;
 import chess.pieces.King;
 import chess.pieces.Knight;
 import chess.pieces.Pawn;
 import chess.pieces.Queen;
 import chess.pieces.Rook;
+import chess.spectator.MoveEvent;
+import chess.spectator.SpectatorFeed;
+import chess.spectator.SpectatorListener;
+import chess.spectator.Subscription;
 
 public class ChessMatch {
-
-	private Integer turn;
+	
+	private static final AtomicLong NEXT_ID = new AtomicLong();
+	
+	// tells games apart in metrics and flight recordings; a reset match gets a new one
+	private long id = NEXT_ID.incrementAndGet();
+	private int turn;
 	private Color currentPlayer;
 	private Board board;
 	private boolean check;
-	private boolean checkMate;
+	private GameState gameState;
 	private ChessPiece enPassantVulnerable;
 	private ChessPiece promoted;
+	private ChessPiece whiteKing;
+	private ChessPiece blackKing;
 	
 	private List<Piece> piecesOnTheBoard = new ArrayList<>();
 	private List<Piece> capturedPieces = new ArrayList<>();
+	private List<Piece> piecesView = Collections.unmodifiableList(piecesOnTheBoard);
+	
+	public static final int WHITE_KING_SIDE = 1;
+	public static final int WHITE_QUEEN_SIDE = 2;
+	public static final int BLACK_KING_SIDE = 4;
+	public static final int BLACK_QUEEN_SIDE = 8;
+	
+	// castling rights that survive a move touching each square (a8 = 0, h1 = 63)
+	private static final int[] CASTLING_MASK = new int[64];
+	
+	static {
+		for (int i = 0; i < 64; i++) {
+			CASTLING_MASK[i] = 15;
+		}
+		CASTLING_MASK[0] &= ~BLACK_QUEEN_SIDE;
+		CASTLING_MASK[4] &= ~(BLACK_KING_SIDE | BLACK_QUEEN_SIDE);
+		CASTLING_MASK[7] &= ~BLACK_KING_SIDE;
+		CASTLING_MASK[56] &= ~WHITE_QUEEN_SIDE;
+		CASTLING_MASK[60] &= ~(WHITE_KING_SIDE | WHITE_QUEEN_SIDE);
+		CASTLING_MASK[63] &= ~WHITE_KING_SIDE;
+	}
+	
+	private int castlingRights;
+	private int halfmoveClock;
+	private long pieceKey;
+	private long pawnKey;
+	
+	// material and piece-square sums (White minus Black) and game phase, kept up to date by putPiece/takePiece
+	private int middlegameScore;
+	private int endgameScore;
+	private int gamePhase;
+	private int[][] pieceCounts = new int[2][6];
+	
+	private MoveStatus lastMoveStatus;
+	
+	// records [0, ply) are the moves played; records past ply are reused by later moves
+	private MoveRecord[] history = new MoveRecord[64];
+	private int ply;
+	// moves taken back, kept apart so that probing moves past ply cannot overwrite them
+	private MoveRecord[] redoStack = new MoveRecord[16];
+	private int redoCount;
+	
+	// bumped on every change that can alter move generation; restored when a move is unmade
+	private long positionVersion;
+	private long versionSequence;
+	private LegalMoveCache legalMoveCache = new LegalMoveCache();
+	private MoveList scratchMoves = new MoveList(32);
+	
+	// every piece created for this board by color * 6 + type; the first usedPieces of each list are
+	// in the game and the rest wait to be reused, so a reset match allocates no new pieces
+	private List<List<ChessPiece>> ownedPieces = new ArrayList<>();
+	private int[] usedPieces = new int[12];
+	
+	// 0-63 square to board square, and the board offsets used to look for attackers
+	private int[] boardSquares = new int[64];
+	private int[] knightOffsets;
+	private int[] kingOffsets;
+	private int[] rookDirections;
+	private int[] bishopDirections;
+	
+	private volatile SpectatorFeed spectatorFeed;
+	private GameClock clock;
+	private BoardObserver boardObserver;
+	// position the game started from, or null for the standard one
+	private String startFen;
+	
+	public static final String START_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
 	
 	public ChessMatch() {
+		initBoard();
+		castlingRights = WHITE_KING_SIDE | WHITE_QUEEN_SIDE | BLACK_KING_SIDE | BLACK_QUEEN_SIDE;
+		initialSetup();
+	}
+	
+	// Starts the game from a position in Forsyth-Edwards Notation.
+	public ChessMatch(String fen) {
+		initBoard();
+		setupFen(fen);
+		startFen = fen;
+	}
+	
+	/*
+	 * Starts a new game from the initial setup in this match, reusing its board, pieces, history
+	 * and move lists instead of allocating new ones. Everything tied to the old game goes with
+	 * it: spectator feed, board observer and clock.
+	 */
+	public void reset() {
+		clear();
+		castlingRights = WHITE_KING_SIDE | WHITE_QUEEN_SIDE | BLACK_KING_SIDE | BLACK_QUEEN_SIDE;
+		initialSetup();
+	}
+	
+	// As reset(), from a FEN position. An invalid FEN leaves the match reset to the initial setup.
+	public void reset(String fen) {
+		clear();
+		try {
+			setupFen(fen);
+		}
+		catch (ChessException e) {
+			reset();
+			throw e;
+		}
+		startFen = fen;
+	}
+	
+	private void initBoard() {
 		board = new Board(8, 8);
+		for (int i = 0; i < 12; i++) {
+			ownedPieces.add(new ArrayList<>());
+		}
 		turn = 1;
 		currentPlayer = Color.WHITE;
-		initialSetup();
+		gameState = GameState.IN_PROGRESS;
+		for (int i = 0; i < 64; i++) {
+			boardSquares[i] = board.square(i / 8, i % 8);
+		}
+		int w = board.getWidth();
+		knightOffsets = new int[] { -2 * w - 1, -2 * w + 1, -w - 2, -w + 2, w - 2, w + 2, 2 * w - 1, 2 * w + 1 };
+		kingOffsets = new int[] { -w - 1, -w, -w + 1, -1, 1, w - 1, w, w + 1 };
+		rookDirections = new int[] { -w, w, -1, 1 };
+		bishopDirections = new int[] { -w - 1, -w + 1, w - 1, w + 1 };
+	}
+	
+	// Empties the board and forgets the game, leaving the state of a match before its setup.
+	private void clear() {
+		for (int i = 0; i < piecesOnTheBoard.size(); i++) {
+			board.removePiece(piecesOnTheBoard.get(i).getSquare());
+		}
+		piecesOnTheBoard.clear();
+		capturedPieces.clear();
+		Arrays.fill(usedPieces, 0);
+		whiteKing = null;
+		blackKing = null;
+		
+		for (int i = 0; i < ply; i++) {
+			history[i].captured = null;
+			history[i].promotedPawn = null;
+			history[i].promotionPiece = null;
+			history[i].enPassantBefore = null;
+			history[i].promotedBefore = null;
+		}
+		ply = 0;
+		Arrays.fill(redoStack, 0, redoCount, null);
+		redoCount = 0;
+		
+		id = NEXT_ID.incrementAndGet();
+		turn = 1;
+		currentPlayer = Color.WHITE;
+		gameState = GameState.IN_PROGRESS;
+		check = false;
+		enPassantVulnerable = null;
+		promoted = null;
+		castlingRights = 0;
+		halfmoveClock = 0;
+		pieceKey = 0;
+		pawnKey = 0;
+		middlegameScore = 0;
+		endgameScore = 0;
+		gamePhase = 0;
+		for (int[] counts : pieceCounts) {
+			Arrays.fill(counts, 0);
+		}
+		lastMoveStatus = null;
+		startFen = null;
+		// the old game's spectators and flag timeout must not outlive it
+		if (spectatorFeed != null) {
+			spectatorFeed.dropAll();
+		}
+		if (clock != null) {
+			clock.stop();
+		}
+		spectatorFeed = null;
+		boardObserver = null;
+		clock = null;
+		positionChanged();
 	}
 	
 	public Integer getTurn() {
@@ -48,7 +233,38 @@ public class ChessMatch {
 	}
 	
 	public boolean getCheckMate() {
-		return checkMate;
+		return gameState == GameState.CHECKMATE;
+	}
+	
+	public GameState getGameState() {
+		return gameState;
+	}
+	
+	public boolean isGameOver() {
+		return gameState != GameState.IN_PROGRESS;
+	}
+	
+	// The mated or flagged side is the one to move, so the winner is its opponent. A flag against
+	// a bare king is a draw, as that side could never win.
+	public Color getWinner() {
+		if (gameState == GameState.TIME_FORFEIT) {
+			Color opponent = opponent(currentPlayer);
+			boolean bareKing = getNonPawnPieceCount(opponent) == 0 && getPieceCount(opponent, PieceType.PAWN) == 0;
+			return bareKing ? null : opponent;
+		}
+		return getCheckMate() ? opponent(currentPlayer) : null;
+	}
+	
+	public GameClock getClock() {
+		return clock;
+	}
+	
+	// Times the rest of the game: moves are charged to the clock, which starts for the side to move.
+	public void setClock(GameClock clock) {
+		this.clock = clock;
+		if (clock != null && !isGameOver()) {
+			clock.start(currentPlayer);
+		}
 	}
 	
 	public ChessPiece getPromoted() {
@@ -59,6 +275,135 @@ public class ChessMatch {
 		return enPassantVulnerable;
 	}
 	
+	public int getCastlingRights() {
+		return castlingRights;
+	}
+	
+	public boolean canCastle(Color color, boolean kingSide) {
+		int right = (color == Color.WHITE) ? (kingSide ? WHITE_KING_SIDE : WHITE_QUEEN_SIDE) : (kingSide ? BLACK_KING_SIDE : BLACK_QUEEN_SIDE);
+		return (castlingRights & right) != 0;
+	}
+	
+	public int getHalfmoveClock() {
+		return halfmoveClock;
+	}
+	
+	public int getPly() {
+		return ply;
+	}
+	
+	public int getLastMove() {
+		return (ply == 0) ? Move.NONE : history[ply - 1].move;
+	}
+	
+	// Zobrist key of the position: pieces, side to move, castling rights and en passant file.
+	public long getPositionKey() {
+		long key = pieceKey ^ Zobrist.CASTLING[castlingRights];
+		if (currentPlayer == Color.BLACK) {
+			key ^= Zobrist.BLACK_TO_MOVE;
+		}
+		if (isEnPassantCapturable()) {
+			key ^= Zobrist.EN_PASSANT_FILE[enPassantVulnerable.getChessPosition().getColumn() - 'a'];
+		}
+		return key;
+	}
+	
+	// Whether a pawn of the side to move stands next to the pawn that just moved two squares. Only
+	// then does the en passant square count, in the key as in the FEN, so transpositions match.
+	private boolean isEnPassantCapturable() {
+		if (enPassantVulnerable == null) {
+			return false;
+		}
+		ChessPosition position = enPassantVulnerable.getChessPosition();
+		int square = position.getSquare();
+		return (position.getColumn() > 'a' && isPawnToMove(pieceAt(square - 1)))
+				|| (position.getColumn() < 'h' && isPawnToMove(pieceAt(square + 1)));
+	}
+	
+	private boolean isPawnToMove(ChessPiece piece) {
+		return piece instanceof Pawn && piece.getColor() == currentPlayer;
+	}
+	
+	// Material plus piece-square score in the middlegame, from White's point of view.
+	public int getMiddlegameScore() {
+		return middlegameScore;
+	}
+	
+	public int getEndgameScore() {
+		return endgameScore;
+	}
+	
+	// 24 with all pieces on the board down to 0 with only kings and pawns; promotions can exceed 24.
+	public int getGamePhase() {
+		return gamePhase;
+	}
+	
+	public int getPieceCount(Color color, PieceType type) {
+		return pieceCounts[color.ordinal()][type.ordinal()];
+	}
+	
+	// Knights, bishops, rooks and queens of one side.
+	public int getNonPawnPieceCount(Color color) {
+		int[] counts = pieceCounts[color.ordinal()];
+		return counts[1] + counts[2] + counts[3] + counts[4];
+	}
+	
+	public List<Piece> getPiecesOnTheBoard() {
+		return piecesView;
+	}
+	
+	// Zobrist key of the pawns alone, for caching pawn-structure terms.
+	public long getPawnKey() {
+		return pawnKey;
+	}
+	
+	public int getKingSquare(Color color) {
+		return king(color).getChessPosition().getSquare();
+	}
+	
+	public long getId() {
+		return id;
+	}
+	
+	public long getPositionVersion() {
+		return positionVersion;
+	}
+	
+	public long getLegalMoveCacheHits() {
+		return legalMoveCache.getHits();
+	}
+	
+	public long getLegalMoveCacheMisses() {
+		return legalMoveCache.getMisses();
+	}
+	
+	public SpectatorFeed getSpectatorFeed() {
+		SpectatorFeed feed = spectatorFeed;
+		if (feed == null) {
+			synchronized (this) {
+				feed = spectatorFeed;
+				if (feed == null) {
+					feed = new SpectatorFeed(1024);
+					spectatorFeed = feed;
+				}
+			}
+		}
+		return feed;
+	}
+	
+	public Subscription subscribe(SpectatorListener listener) {
+		return getSpectatorFeed().subscribe(listener);
+	}
+	
+	public BoardObserver getBoardObserver() {
+		return boardObserver;
+	}
+	
+	// Only one observer at a time; null removes it.
+	public void setBoardObserver(BoardObserver boardObserver) {
+		this.boardObserver = boardObserver;
+	}
+	
 	public ChessPiece[][] getPieces(){
 		ChessPiece[][] mat = new ChessPiece[board.getRows()][board.getColumns()];
 		for (int i = 0; i < board.getRows(); i++) {
@@ -68,264 +413,1038 @@ public class ChessMatch {
 		}
 		return mat;
 	}
-
+	
+	public ChessPiece pieceAt(int square) {
+		return (ChessPiece)board.pieceAt(boardSquares[square]);
+	}
+	
 	private void placeNewPiece(ChessPiece piece, char column, int row) {
-		board.placePiece(piece, new ChessPosition(column, row).toPosition());
+		putPiece(piece, ChessPosition.of(column, row).getSquare());
 		piecesOnTheBoard.add(piece);
+		if (piece instanceof King) {
+			if (piece.getColor() == Color.WHITE) {
+				whiteKing = piece;
+			}
+			else {
+				blackKing = piece;
+			}
+		}
 	}
-		
+	
 	private void initialSetup() {
-		placeNewPiece(new Rook(board, Color.WHITE), 'a', 1);
-		placeNewPiece(new Knight(board, Color.WHITE), 'b', 1);
-		placeNewPiece(new Bishop(board, Color.WHITE), 'c', 1);
-		placeNewPiece(new Queen(board, Color.WHITE), 'd', 1);
-        placeNewPiece(new King(board, Color.WHITE, this), 'e', 1);
-        placeNewPiece(new Bishop(board, Color.WHITE), 'f', 1);
-        placeNewPiece(new Knight(board, Color.WHITE), 'g', 1);
-        placeNewPiece(new Rook(board, Color.WHITE), 'h', 1);
-        placeNewPiece(new Pawn(board, Color.WHITE, this), 'a', 2);
-        placeNewPiece(new Pawn(board, Color.WHITE, this), 'b', 2);
-        placeNewPiece(new Pawn(board, Color.WHITE, this), 'c', 2);
-        placeNewPiece(new Pawn(board, Color.WHITE, this), 'd', 2);
-        placeNewPiece(new Pawn(board, Color.WHITE, this), 'e', 2);
-        placeNewPiece(new Pawn(board, Color.WHITE, this), 'f', 2);
-        placeNewPiece(new Pawn(board, Color.WHITE, this), 'g', 2);
-        placeNewPiece(new Pawn(board, Color.WHITE, this), 'h', 2);
-        
-		placeNewPiece(new Rook(board, Color.BLACK), 'a', 8);
-		placeNewPiece(new Knight(board, Color.BLACK), 'b', 8);
-		placeNewPiece(new Bishop(board, Color.BLACK), 'c', 8);
-		placeNewPiece(new Queen(board, Color.BLACK), 'd', 8);
-        placeNewPiece(new King(board, Color.BLACK, this), 'e', 8);
-        placeNewPiece(new Bishop(board, Color.BLACK), 'f', 8);
-        placeNewPiece(new Knight(board, Color.BLACK), 'g', 8);
-        placeNewPiece(new Rook(board, Color.BLACK), 'h', 8);
-        placeNewPiece(new Pawn(board, Color.BLACK, this), 'a', 7);
-        placeNewPiece(new Pawn(board, Color.BLACK, this), 'b', 7);
-        placeNewPiece(new Pawn(board, Color.BLACK, this), 'c', 7);
-        placeNewPiece(new Pawn(board, Color.BLACK, this), 'd', 7);
-        placeNewPiece(new Pawn(board, Color.BLACK, this), 'e', 7);
-        placeNewPiece(new Pawn(board, Color.BLACK, this), 'f', 7);
-        placeNewPiece(new Pawn(board, Color.BLACK, this), 'g', 7);
-        placeNewPiece(new Pawn(board, Color.BLACK, this), 'h', 7);
+		placeNewPiece(acquirePiece(PieceType.ROOK, Color.WHITE), 'a', 1);
+		placeNewPiece(acquirePiece(PieceType.KNIGHT, Color.WHITE), 'b', 1);
+		placeNewPiece(acquirePiece(PieceType.BISHOP, Color.WHITE), 'c', 1);
+		placeNewPiece(acquirePiece(PieceType.QUEEN, Color.WHITE), 'd', 1);
+        placeNewPiece(acquirePiece(PieceType.KING, Color.WHITE), 'e', 1);
+        placeNewPiece(acquirePiece(PieceType.BISHOP, Color.WHITE), 'f', 1);
+        placeNewPiece(acquirePiece(PieceType.KNIGHT, Color.WHITE), 'g', 1);
+        placeNewPiece(acquirePiece(PieceType.ROOK, Color.WHITE), 'h', 1);
+        placeNewPiece(acquirePiece(PieceType.PAWN, Color.WHITE), 'a', 2);
+        placeNewPiece(acquirePiece(PieceType.PAWN, Color.WHITE), 'b', 2);
+        placeNewPiece(acquirePiece(PieceType.PAWN, Color.WHITE), 'c', 2);
+        placeNewPiece(acquirePiece(PieceType.PAWN, Color.WHITE), 'd', 2);
+        placeNewPiece(acquirePiece(PieceType.PAWN, Color.WHITE), 'e', 2);
+        placeNewPiece(acquirePiece(PieceType.PAWN, Color.WHITE), 'f', 2);
+        placeNewPiece(acquirePiece(PieceType.PAWN, Color.WHITE), 'g', 2);
+        placeNewPiece(acquirePiece(PieceType.PAWN, Color.WHITE), 'h', 2);
+		
+		placeNewPiece(acquirePiece(PieceType.ROOK, Color.BLACK), 'a', 8);
+		placeNewPiece(acquirePiece(PieceType.KNIGHT, Color.BLACK), 'b', 8);
+		placeNewPiece(acquirePiece(PieceType.BISHOP, Color.BLACK), 'c', 8);
+		placeNewPiece(acquirePiece(PieceType.QUEEN, Color.BLACK), 'd', 8);
+        placeNewPiece(acquirePiece(PieceType.KING, Color.BLACK), 'e', 8);
+        placeNewPiece(acquirePiece(PieceType.BISHOP, Color.BLACK), 'f', 8);
+        placeNewPiece(acquirePiece(PieceType.KNIGHT, Color.BLACK), 'g', 8);
+        placeNewPiece(acquirePiece(PieceType.ROOK, Color.BLACK), 'h', 8);
+        placeNewPiece(acquirePiece(PieceType.PAWN, Color.BLACK), 'a', 7);
+        placeNewPiece(acquirePiece(PieceType.PAWN, Color.BLACK), 'b', 7);
+        placeNewPiece(acquirePiece(PieceType.PAWN, Color.BLACK), 'c', 7);
+        placeNewPiece(acquirePiece(PieceType.PAWN, Color.BLACK), 'd', 7);
+        placeNewPiece(acquirePiece(PieceType.PAWN, Color.BLACK), 'e', 7);
+        placeNewPiece(acquirePiece(PieceType.PAWN, Color.BLACK), 'f', 7);
+        placeNewPiece(acquirePiece(PieceType.PAWN, Color.BLACK), 'g', 7);
+        placeNewPiece(acquirePiece(PieceType.PAWN, Color.BLACK), 'h', 7);
+        positionChanged();
     }
 	
+	private void setupFen(String fen) {
+		String[] fields = fen.trim().split("\\s+");
+		if (fields.length < 4 || fields.length > 6) {
+			throw new ChessException("Invalid FEN: " + fen);
+		}
+		String[] ranks = fields[0].split("/");
+		if (ranks.length != 8) {
+			throw new ChessException("Invalid FEN, expected 8 ranks: " + fen);
+		}
+		for (int r = 0; r < 8; r++) {
+			int col = 0;
+			for (char c : ranks[r].toCharArray()) {
+				if (c >= '1' && c <= '8') {
+					col += c - '0';
+					continue;
+				}
+				if (col > 7) {
+					throw new ChessException("Invalid FEN, rank too long: " + fen);
+				}
+				placeNewPiece(newPiece(c, fen), (char)('a' + col), 8 - r);
+				col++;
+			}
+			if (col != 8) {
+				throw new ChessException("Invalid FEN, rank of wrong length: " + fen);
+			}
+		}
+		if (pieceCounts[Color.WHITE.ordinal()][PieceType.KING.ordinal()] != 1
+				|| pieceCounts[Color.BLACK.ordinal()][PieceType.KING.ordinal()] != 1) {
+			throw new ChessException("Invalid FEN, each side needs one king: " + fen);
+		}
+		
+		if (fields[1].equals("b")) {
+			currentPlayer = Color.BLACK;
+		}
+		else if (!fields[1].equals("w")) {
+			throw new ChessException("Invalid FEN, side to move: " + fen);
+		}
+		
+		castlingRights = 0;
+		if (!fields[2].equals("-")) {
+			for (char c : fields[2].toCharArray()) {
+				int right = "KQkq".indexOf(c);
+				if (right < 0) {
+					throw new ChessException("Invalid FEN, castling rights: " + fen);
+				}
+				castlingRights |= 1 << right;
+			}
+		}
+		// rights without the king and rook on their squares could not be used anyway
+		castlingRights &= castlingAvailable(Color.WHITE, 56) | castlingAvailable(Color.BLACK, 0);
+		
+		if (!fields[3].equals("-")) {
+			if (fields[3].length() != 2) {
+				throw new ChessException("Invalid FEN, en passant square: " + fen);
+			}
+			int target = ChessPosition.of(fields[3].charAt(0), fields[3].charAt(1) - '0').getSquare();
+			// the pawn that just moved two squares stands in front of the target square
+			int square = (currentPlayer == Color.WHITE) ? target + 8 : target - 8;
+			ChessPiece pawn = (square >= 0 && square < 64) ? pieceAt(square) : null;
+			if (!(pawn instanceof Pawn) || pawn.getColor() == currentPlayer) {
+				throw new ChessException("Invalid FEN, no pawn to capture en passant: " + fen);
+			}
+			enPassantVulnerable = pawn;
+		}
+		
+		try {
+			halfmoveClock = (fields.length > 4) ? Integer.parseInt(fields[4]) : 0;
+			int fullmove = (fields.length > 5) ? Integer.parseInt(fields[5]) : 1;
+			if (halfmoveClock < 0 || fullmove < 1) {
+				throw new ChessException("Invalid FEN, move counters: " + fen);
+			}
+			turn = 2 * fullmove - 1 + (currentPlayer == Color.BLACK ? 1 : 0);
+		}
+		catch (NumberFormatException e) {
+			throw new ChessException("Invalid FEN, move counters: " + fen);
+		}
+		
+		if (isKingAttacked(opponent(currentPlayer))) {
+			throw new ChessException("Invalid FEN, the side not to move is in check: " + fen);
+		}
+		check = isKingAttacked(currentPlayer);
+		positionChanged();
+		gameState = testGameState();
+	}
+	
+	private ChessPiece newPiece(char c, String fen) {
+		Color color = Character.isUpperCase(c) ? Color.WHITE : Color.BLACK;
+		switch (Character.toLowerCase(c)) {
+		case 'p':
+			return acquirePiece(PieceType.PAWN, color);
+		case 'n':
+			return acquirePiece(PieceType.KNIGHT, color);
+		case 'b':
+			return acquirePiece(PieceType.BISHOP, color);
+		case 'r':
+			return acquirePiece(PieceType.ROOK, color);
+		case 'q':
+			return acquirePiece(PieceType.QUEEN, color);
+		case 'k':
+			return acquirePiece(PieceType.KING, color);
+		default:
+			throw new ChessException("Invalid FEN, unknown piece '" + c + "': " + fen);
+		}
+	}
+	
+	// Castling rights of one side that match its pieces; homeRow is the a-file square of its back rank.
+	private int castlingAvailable(Color color, int homeRow) {
+		if (!isPiece(pieceAt(homeRow + 4), color, PieceType.KING)) {
+			return 0;
+		}
+		boolean white = color == Color.WHITE;
+		int rights = 0;
+		if (isPiece(pieceAt(homeRow + 7), color, PieceType.ROOK)) {
+			rights |= white ? WHITE_KING_SIDE : BLACK_KING_SIDE;
+		}
+		if (isPiece(pieceAt(homeRow), color, PieceType.ROOK)) {
+			rights |= white ? WHITE_QUEEN_SIDE : BLACK_QUEEN_SIDE;
+		}
+		return rights;
+	}
+	
+	// Current position in Forsyth-Edwards Notation.
+	public String toFen() {
+		StringBuilder sb = new StringBuilder(90);
+		for (int r = 0; r < 8; r++) {
+			int empty = 0;
+			for (int c = 0; c < 8; c++) {
+				ChessPiece piece = pieceAt(r * 8 + c);
+				if (piece == null) {
+					empty++;
+					continue;
+				}
+				if (empty > 0) {
+					sb.append(empty);
+					empty = 0;
+				}
+				char letter = "pnbrqk".charAt(piece.getType().ordinal());
+				sb.append(piece.getColor() == Color.WHITE ? Character.toUpperCase(letter) : letter);
+			}
+			if (empty > 0) {
+				sb.append(empty);
+			}
+			if (r < 7) {
+				sb.append('/');
+			}
+		}
+		sb.append(currentPlayer == Color.WHITE ? " w " : " b ");
+		if (castlingRights == 0) {
+			sb.append('-');
+		}
+		for (int i = 0; i < 4; i++) {
+			if ((castlingRights & (1 << i)) != 0) {
+				sb.append("KQkq".charAt(i));
+			}
+		}
+		sb.append(' ');
+		if (!isEnPassantCapturable()) {
+			sb.append('-');
+		}
+		else {
+			int square = enPassantVulnerable.getChessPosition().getSquare();
+			sb.append(ChessPosition.fromSquare(enPassantVulnerable.getColor() == Color.WHITE ? square + 8 : square - 8));
+		}
+		sb.append(' ').append(halfmoveClock).append(' ').append((turn + 1) / 2);
+		return sb.toString();
+	}
+	
+	// Independent copy of the game, replayed from the same start position so that repetitions
+	// of earlier positions still count. Must be called from the thread that owns this match.
+	public ChessMatch snapshot() {
+		ChessMatch copy = (startFen == null) ? new ChessMatch() : new ChessMatch(startFen);
+		for (int i = 0; i < ply; i++) {
+			if (history[i].move == Move.NONE) {
+				copy.makeNullMove();
+			}
+			else {
+				copy.makeMove(history[i].move);
+			}
+		}
+		copy.gameState = gameState;
+		return copy;
+	}
+	
 	public boolean[][] possibleMoves(ChessPosition sourcePosition) {
 		Position position = sourcePosition.toPosition();
 		validateSourcePosition(position);
-		return board.piece(position).possibleMoves();
+		boolean[][] mat = new boolean[board.getRows()][board.getColumns()];
+		MoveList moves = legalMoves();
+		int from = sourcePosition.getSquare();
+		for (int i = 0; i < moves.size(); i++) {
+			int move = moves.get(i);
+			if (Move.from(move) == from) {
+				int to = Move.to(move);
+				mat[to / board.getColumns()][to % board.getColumns()] = true;
+			}
+		}
+		return mat;
+	}
+	
+	// Pseudo-legal moves of the side to move: they may still leave its own king in check.
+	public void generateMoves(MoveList moves) {
+		generateMoves(moves, ChessPiece.ALL_MOVES);
+	}
+	
+	// Only the given kinds of moves, see ChessPiece.NOISY_MOVES and ChessPiece.QUIET_MOVES.
+	public void generateMoves(MoveList moves, int kinds) {
+		long start = Metrics.ENABLED ? System.nanoTime() : 0;
+		for (int i = 0; i < piecesOnTheBoard.size(); i++) {
+			ChessPiece p = (ChessPiece)piecesOnTheBoard.get(i);
+			if (p.getColor() == currentPlayer) {
+				p.generateMoves(moves, kinds);
+			}
+		}
+		if (Metrics.ENABLED) {
+			Metrics.MOVE_GENERATION.record(System.nanoTime() - start);
+		}
+	}
+	
+	public void generateLegalMoves(MoveList moves) {
+		int start = moves.size();
+		generateMoves(moves);
+		int size = start;
+		for (int i = start; i < moves.size(); i++) {
+			int move = moves.get(i);
+			if (isLegal(move)) {
+				moves.set(size++, move);
+			}
+		}
+		moves.truncate(size);
+	}
+	
+	// Whether the move, typically from a hash table or another position, can be generated here.
+	public boolean isPseudoLegal(int move) {
+		ChessPiece p = pieceAt(Move.from(move));
+		if (p == null || p.getColor() != currentPlayer) {
+			return false;
+		}
+		scratchMoves.clear();
+		p.generateMoves(scratchMoves);
+		return scratchMoves.indexOf(move) >= 0;
+	}
+	
+	// After makeMove of a pseudo-legal move: whether the side that moved kept its king out of check.
+	public boolean isLastMoveLegal() {
+		return !isKingAttacked(opponent(currentPlayer));
+	}
+	
+	// Whether a pseudo-legal move of the side to move keeps its king out of check.
+	public boolean isLegal(int move) {
+		doMove(move);
+		boolean legal = !isKingAttacked(opponent(currentPlayer));
+		unmakeMove();
+		return legal;
+	}
+	
+	// Legal moves of the current position, generated once per position version.
+	private MoveList legalMoves() {
+		CacheProbeEvent event = CacheProbeEvent.TYPE.isEnabled() ? new CacheProbeEvent() : null;
+		if (event != null) {
+			event.begin();
+		}
+		MoveList moves = legalMoveCache.get(positionVersion);
+		boolean hit = moves != null;
+		if (moves == null) {
+			moves = legalMoveCache.reset(positionVersion);
+			generateLegalMoves(moves);
+		}
+		if (event != null && event.shouldCommit()) {
+			event.matchId = id;
+			event.cache = "legalMoves";
+			event.hit = hit;
+			event.commit();
+		}
+		return moves;
+	}
+	
+	private int findLegalMove(int request) {
+		MoveList moves = legalMoves();
+		for (int i = 0; i < moves.size(); i++) {
+			if (Move.matches(moves.get(i), request)) {
+				return moves.get(i);
+			}
+		}
+		return Move.NONE;
+	}
+	
+	private boolean hasLegalMoveFrom(int square) {
+		MoveList moves = legalMoves();
+		for (int i = 0; i < moves.size(); i++) {
+			if (Move.from(moves.get(i)) == square) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	private void positionChanged() {
+		positionVersion = ++versionSequence;
+	}
+	
+	private void putPiece(ChessPiece piece, int square) {
+		board.placePiece(piece, boardSquares[square]);
+		pieceKey ^= Zobrist.piece(piece, square);
+		int c = piece.getColor().ordinal();
+		int t = piece.getType().ordinal();
+		middlegameScore += PieceSquareTables.MIDDLEGAME[c][t][square];
+		endgameScore += PieceSquareTables.ENDGAME[c][t][square];
+		gamePhase += PieceSquareTables.PHASE[t];
+		pieceCounts[c][t]++;
+		if (piece instanceof Pawn) {
+			pawnKey ^= Zobrist.piece(piece, square);
+		}
+		if (boardObserver != null) {
+			boardObserver.pieceAdded(piece, square);
+		}
+	}
+	
+	private ChessPiece takePiece(int square) {
+		ChessPiece piece = (ChessPiece)board.removePiece(boardSquares[square]);
+		if (piece != null) {
+			pieceKey ^= Zobrist.piece(piece, square);
+			int c = piece.getColor().ordinal();
+			int t = piece.getType().ordinal();
+			middlegameScore -= PieceSquareTables.MIDDLEGAME[c][t][square];
+			endgameScore -= PieceSquareTables.ENDGAME[c][t][square];
+			gamePhase -= PieceSquareTables.PHASE[t];
+			pieceCounts[c][t]--;
+			if (piece instanceof Pawn) {
+				pawnKey ^= Zobrist.piece(piece, square);
+			}
+			if (boardObserver != null) {
+				boardObserver.pieceRemoved(piece, square);
+			}
+		}
+		return piece;
 	}
 	
-	private Piece makeMove(Position source, Position target) {
-		Piece p = board.removePiece(source);
-		((ChessPiece)p).increaseMoveCount();
-		Piece capturedPiece = board.removePiece(target);
-		board.placePiece(p, target);
+	// Plays a pseudo-legal move and pushes it on the history, dropping the moves that could be redone.
+	public void makeMove(int move) {
+		doMove(move);
+		redoCount = 0;
+	}
+	
+	// Unmakes the last move, whether it came from makeMove, performChessMove or tryMove.
+	public void undoMove() {
+		if (ply == 0) {
+			throw new ChessException("There is no move to undo");
+		}
+		unmakeMove();
+	}
+	
+	// Saves the state the move is about to change in the next history record.
+	private MoveRecord pushRecord(int move) {
+		if (ply == history.length) {
+			history = Arrays.copyOf(history, ply * 2);
+		}
+		MoveRecord record = history[ply];
+		if (record == null) {
+			record = new MoveRecord();
+			history[ply] = record;
+		}
+		ply++;
+		record.move = move;
+		record.turnBefore = turn;
+		record.checkBefore = check;
+		record.enPassantBefore = enPassantVulnerable;
+		record.promotedBefore = promoted;
+		record.castlingRightsBefore = castlingRights;
+		record.halfmoveClockBefore = halfmoveClock;
+		record.keyBefore = getPositionKey();
+		record.versionBefore = positionVersion;
+		record.gameStateBefore = gameState;
+		return record;
+	}
+	
+	private void doMove(int move) {
+		MoveRecord record = pushRecord(move);
+		ChessPiece mover = pieceAt(Move.from(move));
+		record.captured = movePieces(move, record);
+		
+		castlingRights &= CASTLING_MASK[Move.from(move)] & CASTLING_MASK[Move.to(move)];
+		halfmoveClock = (mover instanceof Pawn || record.captured != null) ? 0 : halfmoveClock + 1;
+		// #specialMove en passant
+		enPassantVulnerable = (Move.flags(move) == Move.DOUBLE_PAWN_PUSH) ? mover : null;
+		promoted = record.promotionPiece;
+		nextTurn();
+		check = testCheck();
+		positionChanged();
+	}
+	
+	// Passes the turn, for null-move pruning. undoMove() takes it back like any other move.
+	// Repetitions are not looked for across it, and the side to move must not be in check.
+	public void makeNullMove() {
+		MoveRecord record = pushRecord(Move.NONE);
+		record.captured = null;
+		record.promotedPawn = null;
+		record.promotionPiece = null;
+		
+		enPassantVulnerable = null;
+		promoted = null;
+		halfmoveClock = 0;
+		nextTurn();
+		check = false;
+		positionChanged();
+		redoCount = 0;
+	}
+	
+	private void unmakeMove() {
+		MoveRecord record = history[--ply];
+		if (record.move != Move.NONE) {
+			restorePieces(record.move, record);
+		}
+		turn = record.turnBefore;
+		currentPlayer = opponent(currentPlayer);
+		check = record.checkBefore;
+		gameState = record.gameStateBefore;
+		enPassantVulnerable = record.enPassantBefore;
+		promoted = record.promotedBefore;
+		castlingRights = record.castlingRightsBefore;
+		halfmoveClock = record.halfmoveClockBefore;
+		// the position is exactly the one before the move, so anything cached for it is still valid
+		positionVersion = record.versionBefore;
+	}
+	
+	private ChessPiece movePieces(int move, MoveRecord record) {
+		int from = Move.from(move);
+		int to = Move.to(move);
+		int flags = Move.flags(move);
+		ChessPiece p = takePiece(from);
+		p.increaseMoveCount();
 		
+		// Specialmove en passant: the captured pawn is beside the source, not on the target
+		ChessPiece capturedPiece = takePiece((flags == Move.EN_PASSANT) ? (from & ~7) | (to & 7) : to);
 		if (capturedPiece != null) {
 			piecesOnTheBoard.remove(capturedPiece);
 			capturedPieces.add(capturedPiece);
 		}
 		
+		// #specialmove promotion
+		record.promotedPawn = null;
+		record.promotionPiece = null;
+		if (Move.isPromotion(move)) {
+			record.promotedPawn = p;
+			piecesOnTheBoard.remove(p);
+			p = newPiece(Move.promotion(move), p.getColor());
+			piecesOnTheBoard.add(p);
+			record.promotionPiece = p;
+		}
+		putPiece(p, to);
+		
 		// specialMove castling king side rook
-		if (p instanceof King && target.getColumn() == source.getColumn() + 2) {
-			Position sourceT = new Position(source.getRow(), source.getColumn() + 3);
-			Position targetT = new Position(source.getRow(), source.getColumn() + 1);
-			ChessPiece rook = (ChessPiece)board.removePiece(sourceT);
-			board.placePiece(rook, targetT);
+		if (flags == Move.KING_CASTLE) {
+			ChessPiece rook = takePiece(from + 3);
+			putPiece(rook, from + 1);
 			rook.increaseMoveCount();
 		}
 		
-		// specialMove castling king side rook
-		if (p instanceof King && target.getColumn() == source.getColumn() - 2) {
-			Position sourceT = new Position(source.getRow(), source.getColumn() - 4);
-			Position targetT = new Position(source.getRow(), source.getColumn() - 1);
-			ChessPiece rook = (ChessPiece)board.removePiece(sourceT);
-			board.placePiece(rook, targetT);
+		// specialMove castling queen side rook
+		if (flags == Move.QUEEN_CASTLE) {
+			ChessPiece rook = takePiece(from - 4);
+			putPiece(rook, from - 1);
 			rook.increaseMoveCount();
 		}
+		
+		return capturedPiece;
+	}
 	
-		// Specialmove en passant
-		if (p instanceof Pawn) {
-			if (source.getColumn() != target.getColumn() && capturedPiece == null) {
-				Position pawnPosition;
-				if (((Pawn) p).getColor() == Color.WHITE) {
-					pawnPosition = new Position(target.getRow() + 1, target.getColumn());
-				}
-				else {
-					pawnPosition = new Position(target.getRow() - 1, target.getColumn());
-				}
-				capturedPiece = board.removePiece(pawnPosition);
-				capturedPieces.add(capturedPiece);
-				piecesOnTheBoard.remove(capturedPiece);
-			}
+	private void restorePieces(int move, MoveRecord record) {
+		int from = Move.from(move);
+		int to = Move.to(move);
+		int flags = Move.flags(move);
+		ChessPiece p = takePiece(to);
+		if (record.promotedPawn != null) {
+			piecesOnTheBoard.remove(p);
+			releasePiece(p);
+			p = record.promotedPawn;
+			piecesOnTheBoard.add(p);
 		}
+		putPiece(p, from);
+		p.decreaseMoveCount();
 		
-		return capturedPiece;
+		if (record.captured != null) {
+			putPiece(record.captured, (flags == Move.EN_PASSANT) ? (from & ~7) | (to & 7) : to);
+			capturedPieces.remove(capturedPieces.size() - 1);
+			piecesOnTheBoard.add(record.captured);
+		}
+		
+		// specialMove castling king side rook
+		if (flags == Move.KING_CASTLE) {
+			ChessPiece rook = takePiece(from + 1);
+			putPiece(rook, from + 3);
+			rook.decreaseMoveCount();
+		}
+		
+		// specialMove castling queen side rook
+		if (flags == Move.QUEEN_CASTLE) {
+			ChessPiece rook = takePiece(from - 1);
+			putPiece(rook, from - 4);
+			rook.decreaseMoveCount();
+		}
 	}
-
+	
 	private Color opponent(Color color) {
 		return (color == Color.WHITE) ? Color.BLACK : Color.WHITE;
 	}
 	
 	private ChessPiece king(Color color) {
-		List<Piece> list = piecesOnTheBoard.stream().filter(x -> ((ChessPiece)x).getColor() == color).collect(Collectors.toList());
-		for (Piece p : list) {
-			if (p instanceof King) {
-				return (ChessPiece)p;
-			}
+		ChessPiece king = (color == Color.WHITE) ? whiteKing : blackKing;
+		if (king == null) {
+			throw new IllegalStateException("There is no " + color + " king on the board");
 		}
-		throw new IllegalStateException("There is no " + color + " king on the board");
+		return king;
 	}
 	
-	private boolean testCheck(Color color) {
-		Position kingPosition = king(color).getChessPosition().toPosition();
-		List<Piece> opponentPieces = piecesOnTheBoard.stream().filter(x -> ((ChessPiece)x).getColor() == opponent(color)).collect(Collectors.toList());
-		for (Piece p : opponentPieces) {
-			boolean[][] mat = p.possibleMoves();
-			if (mat[kingPosition.getRow()][kingPosition.getColumn()]) {
+	public boolean isKingAttacked(Color color) {
+		return isAttacked(king(color).getSquare(), opponent(color));
+	}
+	
+	public boolean isSquareAttacked(int square, Color by) {
+		return isAttacked(boardSquares[square], by);
+	}
+	
+	// Looks outwards from the board square for each kind of attacker instead of generating the opponent's moves.
+	private boolean isAttacked(int sq, Color by) {
+		int pawnSide = (by == Color.WHITE) ? board.getWidth() : -board.getWidth();
+		if (isPiece(sq + pawnSide - 1, by, PieceType.PAWN) || isPiece(sq + pawnSide + 1, by, PieceType.PAWN)) {
+			return true;
+		}
+		for (int d : knightOffsets) {
+			if (isPiece(sq + d, by, PieceType.KNIGHT)) {
+				return true;
+			}
+		}
+		for (int d : kingOffsets) {
+			if (isPiece(sq + d, by, PieceType.KING)) {
+				return true;
+			}
+		}
+		for (int d : rookDirections) {
+			Piece p = firstPiece(sq, d);
+			if (isPiece(p, by, PieceType.ROOK) || isPiece(p, by, PieceType.QUEEN)) {
+				return true;
+			}
+		}
+		for (int d : bishopDirections) {
+			Piece p = firstPiece(sq, d);
+			if (isPiece(p, by, PieceType.BISHOP) || isPiece(p, by, PieceType.QUEEN)) {
 				return true;
 			}
 		}
 		return false;
 	}
 	
-	private void undoMove (Position source, Position target, Piece capturedPiece) {
-		Piece p = board.removePiece(target);
-		board.placePiece(p, source);
-		
-		if (capturedPiece != null) {
-			board.placePiece(capturedPiece, target);
-			capturedPieces.remove(capturedPiece);
-			piecesOnTheBoard.add(capturedPiece);
+	private Piece firstPiece(int sq, int direction) {
+		Piece p;
+		do {
+			sq += direction;
+			p = board.pieceAt(sq);
+		} while (p == null);
+		return p;
+	}
+	
+	private boolean isPiece(int sq, Color color, PieceType type) {
+		return isPiece(board.pieceAt(sq), color, type);
+	}
+	
+	private boolean isPiece(Piece p, Color color, PieceType type) {
+		return p != null && p != Board.OFF_BOARD && ((ChessPiece)p).getColor() == color && ((ChessPiece)p).getType() == type;
+	}
+	
+	private boolean testCheck() {
+		long start = Metrics.ENABLED ? System.nanoTime() : 0;
+		boolean check = isKingAttacked(currentPlayer);
+		if (Metrics.ENABLED) {
+			Metrics.CHECK_TEST.record(System.nanoTime() - start);
 		}
-		
-		// specialMove castling king side rook
-		if (p instanceof King && target.getColumn() == source.getColumn() + 2) {
-			Position sourceT = new Position(source.getRow(), source.getColumn() + 3);
-			Position targetT = new Position(source.getRow(), source.getColumn() + 1);
-			ChessPiece rook = (ChessPiece)board.removePiece(targetT);
-			board.placePiece(rook, sourceT);
-			rook.decreaseMoveCount();;
+		return check;
+	}
+	
+	private GameState testGameState() {
+		long start = Metrics.ENABLED ? System.nanoTime() : 0;
+		GameState state = testGameState(!legalMoves().isEmpty());
+		if (Metrics.ENABLED) {
+			Metrics.GAME_STATE_TEST.record(System.nanoTime() - start);
 		}
-		
-		// specialMove castling king side rook
-		if (p instanceof King && target.getColumn() == source.getColumn() - 2) {
-			Position sourceT = new Position(source.getRow(), source.getColumn() - 4);
-			Position targetT = new Position(source.getRow(), source.getColumn() - 1);
-			ChessPiece rook = (ChessPiece)board.removePiece(targetT);
-			board.placePiece(rook, sourceT);
-			rook.decreaseMoveCount();
+		return state;
+	}
+	
+	// State of the current position for callers that play with makeMove(), which leaves the game
+	// state alone; they usually have the legal moves already and pass whether there are any.
+	public GameState testGameState(boolean anyLegalMove) {
+		if (check && !anyLegalMove) {
+			return GameState.CHECKMATE;
 		}
-		
-		// Specialmove en passant
-		if (p instanceof Pawn) {
-			if (source.getColumn() != target.getColumn() && capturedPiece == enPassantVulnerable) {
-				ChessPiece pawn = (ChessPiece)board.removePiece(target);
-				Position pawnPosition;
-				if (((Pawn) p).getColor() == Color.WHITE) {
-					pawnPosition = new Position(3, target.getColumn());
-				}
-				else {
-					pawnPosition = new Position(4, target.getColumn());
-				}
-				board.placePiece(pawn, pawnPosition);
+		return testDraw(anyLegalMove);
+	}
+	
+	private GameState testDraw(boolean anyLegalMove) {
+		if (!anyLegalMove) {
+			return GameState.STALEMATE;
+		}
+		if (halfmoveClock >= 100) {
+			return GameState.FIFTY_MOVE_RULE;
+		}
+		if (testRepetition()) {
+			return GameState.THREEFOLD_REPETITION;
+		}
+		if (testInsufficientMaterial()) {
+			return GameState.INSUFFICIENT_MATERIAL;
+		}
+		return GameState.IN_PROGRESS;
+	}
+	
+	// Whether the position occurred before since the last capture or pawn move; searches score it as a draw.
+	public boolean isRepetition() {
+		long key = getPositionKey();
+		for (int p = ply - 2; p >= 0 && ply - p <= halfmoveClock; p -= 2) {
+			if (history[p].keyBefore == key) {
+				return true;
 			}
 		}
+		return false;
 	}
-	private boolean testCheckMate(Color color){
-		if(!testCheck(color)){
-			return false;
+	
+	private boolean testRepetition() {
+		long key = getPositionKey();
+		int repetitions = 1;
+		for (int p = ply - 2; p >= 0 && ply - p <= halfmoveClock; p -= 2) {
+			if (history[p].keyBefore == key && ++repetitions >= 3) {
+				return true;
+			}
 		}
-		List<Piece> list = piecesOnTheBoard.stream().filter(x -> ((ChessPiece)x).getColor() == color).collect(Collectors.toList());
-		for (Piece p : list) {
-			boolean [][] mat = p.possibleMoves();
-			for (int i = 0; i < board.getRows(); i++){
-				for(int j = 0; j < board.getColumns(); j++) {
-					if (mat[i][j]) {
-						Position source = ((ChessPiece)p).getChessPosition().toPosition();
-						Position target = new Position(i, j);
-						Piece capturedPiece = makeMove(source, target);
-						boolean testCheck = testCheck(color);
-						undoMove(source, target, capturedPiece);
-						if (!testCheck){
-							return false;
-						}
-					}
-				}
+		return false;
+	}
+	
+	private boolean testInsufficientMaterial() {
+		for (int[] counts : pieceCounts) {
+			if (counts[PieceType.PAWN.ordinal()] + counts[PieceType.ROOK.ordinal()] + counts[PieceType.QUEEN.ordinal()] > 0) {
+				return false;
 			}
 		}
-		return true;
+		int knights = 0;
+		int bishopSquareColors = 0;
+		for (Piece p : piecesOnTheBoard) {
+			ChessPiece piece = (ChessPiece)p;
+			switch (piece.getType()) {
+			case KING:
+				break;
+			case KNIGHT:
+				knights++;
+				break;
+			case BISHOP:
+				ChessPosition pos = piece.getChessPosition();
+				bishopSquareColors |= 1 << ((pos.getColumn() - 'a' + pos.getRow()) & 1);
+				break;
+			default:
+				return false;
+			}
+		}
+		if (knights == 0) {
+			return bishopSquareColors != 3;
+		}
+		return knights == 1 && bishopSquareColors == 0;
 	}
 	
 	public ChessPiece performChessMove(ChessPosition sourcePosition, ChessPosition targetPosition) {
+		MoveAppliedEvent event = MoveAppliedEvent.TYPE.isEnabled() ? new MoveAppliedEvent() : null;
+		if (event != null) {
+			event.begin();
+		}
+		long start = (Metrics.ENABLED || event != null) ? System.nanoTime() : 0;
+		testFlag();
+		if (isGameOver()) {
+			throw new ChessException("The game is over: " + gameState);
+		}
 		Position source = sourcePosition.toPosition();
 		Position target = targetPosition.toPosition();
 		validateSourcePosition(source);
 		ValidateTargetPosition(source, target);
-		Piece capturedPiece = makeMove(source, target);
-		
-		if (testCheck(currentPlayer)) {
-			undoMove(source, target, capturedPiece);
-			throw new ChessException ("You can't put yourself in check");
+		int move = findLegalMove(Move.encode(sourcePosition, targetPosition));
+		if (move == Move.NONE) {
+			// a promotion: the pawn becomes a queen until replacePromotedPiece says otherwise
+			move = findLegalMove(Move.encode(sourcePosition.getSquare(), targetPosition.getSquare(), PieceType.QUEEN));
 		}
-		
-		ChessPiece movedPiece = (ChessPiece)board.piece(target);
-		
-		// #specialmove promotion
-			promoted = null;
-			if (movedPiece instanceof Pawn) {
-				if ((movedPiece.getColor() == Color.WHITE && target.getRow() == 0) || (movedPiece.getColor() == Color.BLACK && target.getRow() == 7)) {
-					promoted = (ChessPiece)board.piece(target);
-					promoted = replacePromotedPiece("Q");
-				}
+		if (event != null) {
+			event.validationNanos = System.nanoTime() - start;
+		}
+		MoveStatus status = punchClock();
+		if (status == MoveStatus.GAME_OVER) {
+			throw new ChessException("The game is over: " + gameState);
+		}
+		if (status == MoveStatus.CLOCK_STOPPED) {
+			throw new ChessException("The clock of " + currentPlayer + " is not running");
+		}
+		ChessPiece captured = applyMove(move, event);
+		if (Metrics.ENABLED) {
+			Metrics.MOVE.record(System.nanoTime() - start);
+		}
+		return captured;
+	}
+	
+	// Validates and applies an encoded move without throwing; nothing is allocated when the move is rejected.
+	public MoveStatus tryMove(int move) {
+		MoveAppliedEvent event = MoveAppliedEvent.TYPE.isEnabled() ? new MoveAppliedEvent() : null;
+		if (event != null) {
+			event.begin();
+		}
+		long start = (Metrics.ENABLED || event != null) ? System.nanoTime() : 0;
+		lastMoveStatus = checkMove(move);
+		if (lastMoveStatus == MoveStatus.OK) {
+			int legal = findLegalMove(move);
+			if (legal == Move.NONE) {
+				legal = findLegalMove(Move.withPromotion(move, PieceType.QUEEN));
 			}
+			if (event != null) {
+				event.validationNanos = System.nanoTime() - start;
+			}
+			lastMoveStatus = punchClock();
+			if (lastMoveStatus == MoveStatus.OK) {
+				applyMove(legal, event);
+			}
+		}
+		else if (event != null && event.shouldCommit()) {
+			event.matchId = id;
+			event.move = Move.isValid(move) ? Move.toString(move) : Integer.toHexString(move);
+			event.status = lastMoveStatus.name();
+			event.validationNanos = System.nanoTime() - start;
+			event.gameState = gameState.name();
+			event.commit();
+		}
+		if (Metrics.ENABLED) {
+			Metrics.MOVE.record(System.nanoTime() - start);
+		}
+		return lastMoveStatus;
+	}
+	
+	// Applies the moves in order and stops at the first rejected one, whose status is left in getLastMoveStatus().
+	public int applyMoves(int[] moves) {
+		for (int i = 0; i < moves.length; i++) {
+			if (tryMove(moves[i]) != MoveStatus.OK) {
+				return i;
+			}
+		}
+		return moves.length;
+	}
+	
+	public MoveStatus getLastMoveStatus() {
+		return lastMoveStatus;
+	}
+	
+	private MoveStatus checkMove(int move) {
+		testFlag();
+		if (isGameOver()) {
+			return MoveStatus.GAME_OVER;
+		}
+		if (!Move.isValid(move)) {
+			return MoveStatus.INVALID_ENCODING;
+		}
+		ChessPiece piece = pieceAt(Move.from(move));
+		if (piece == null) {
+			return MoveStatus.NO_PIECE;
+		}
+		if (piece.getColor() != currentPlayer) {
+			return MoveStatus.NOT_YOUR_PIECE;
+		}
+		if (findLegalMove(move) != Move.NONE) {
+			return MoveStatus.OK;
+		}
+		if (Move.isPromotion(move)) {
+			return (findLegalMove(move & 0xFFF) != Move.NONE) ? MoveStatus.INVALID_PROMOTION : MoveStatus.ILLEGAL_MOVE;
+		}
+		// a promotion without a piece defaults to the queen
+		return (findLegalMove(Move.withPromotion(move, PieceType.QUEEN)) != Move.NONE) ? MoveStatus.OK : MoveStatus.ILLEGAL_MOVE;
+	}
+	
+	// Ends the game if the side to move has run out of time, for instance once the clock's
+	// FlagListener has reported it; moves look at the clock themselves.
+	public boolean testFlag() {
+		if (clock != null && !isGameOver() && clock.checkFlag() == currentPlayer) {
+			gameState = GameState.TIME_FORFEIT;
+		}
+		return gameState == GameState.TIME_FORFEIT;
+	}
+	
+	// Charges the move about to be played to the clock: GAME_OVER if the flag fell first, which ends
+	// the game, and CLOCK_STOPPED if the mover's time is not running, as after GameClock.stop().
+	private MoveStatus punchClock() {
+		if (clock == null || clock.punch(currentPlayer)) {
+			return MoveStatus.OK;
+		}
+		if (clock.getFlagged() != null) {
+			gameState = GameState.TIME_FORFEIT;
+			return MoveStatus.GAME_OVER;
+		}
+		return MoveStatus.CLOCK_STOPPED;
+	}
+	
+	// Hands the clock to the side to move after a takeback or redo, before the move is unmade or made
+	// again; if a flag has fallen the game stays lost on time and the call fails.
+	private void switchClock(Color side) {
+		if (clock != null && !clock.switchTo(side)) {
+			gameState = GameState.TIME_FORFEIT;
+			throw new ChessException("The game is over: " + gameState);
+		}
+	}
+	
+	// Plays a legal move as part of the game: besides makeMove it settles the game state and informs spectators.
+	private ChessPiece applyMove(int move, MoveAppliedEvent event) {
+		makeMove(move);
+		MoveRecord record = history[ply - 1];
+		long mateTestStart = event != null ? System.nanoTime() : 0;
+		gameState = testGameState();
+		if (event != null) {
+			event.mateTestNanos = System.nanoTime() - mateTestStart;
+		}
+		record.gameStateAfter = gameState;
+		record.event = moveEvent(record);
 		
-		check = (testCheck(opponent(currentPlayer))) ? true : false;
+		if (spectatorFeed != null) {
+			spectatorFeed.publish(record.event);
+		}
+		if (clock != null && isGameOver()) {
+			clock.stop();
+		}
 		
-		if (testCheckMate(opponent(currentPlayer))) {
-			checkMate = true;
+		if (event != null && event.shouldCommit()) {
+			event.matchId = id;
+			event.move = Move.toString(move);
+			event.status = MoveStatus.OK.name();
+			event.gameState = gameState.name();
+			event.commit();
 		}
-		else {
-			nextTurn();
+		return record.captured;
+	}
+	
+	private int moveEvent(MoveRecord record) {
+		int move = record.move;
+		int flags = (check ? MoveEvent.CHECK : 0) | (getCheckMate() ? MoveEvent.CHECKMATE : 0)
+				| (Move.isCastling(move) ? MoveEvent.CASTLING : 0) | (Move.isEnPassant(move) ? MoveEvent.EN_PASSANT : 0);
+		return MoveEvent.encode(Move.from(move), Move.to(move), MoveEvent.typeOf(record.captured), MoveEvent.typeOf(record.promotionPiece), flags);
+	}
+	
+	public boolean canTakeback() {
+		return ply > 0;
+	}
+	
+	public boolean canRedo() {
+		return redoCount > 0;
+	}
+	
+	// Restores the position before the last move from its history record, without replaying the game.
+	public void takeback() {
+		if (ply == 0) {
+			throw new ChessException("There is no move to take back");
 		}
+		switchClock(opponent(currentPlayer));
+		unmakeMove();
+		MoveRecord record = history[ply];
+		history[ply] = null;
+		if (redoCount == redoStack.length) {
+			redoStack = Arrays.copyOf(redoStack, redoCount * 2);
+		}
+		redoStack[redoCount++] = record;
 		
-		// #specialMove en passant
-		if (movedPiece instanceof Pawn && (target.getRow() == source.getRow() - 2) || (target.getRow() == source.getRow() + 2)) {
-			enPassantVulnerable = movedPiece;
+		if (spectatorFeed != null) {
+			spectatorFeed.publish(record.event | MoveEvent.TAKEBACK);
 		}
-		else {
-			enPassantVulnerable = null;
+	}
+	
+	public void redo() {
+		if (redoCount == 0) {
+			throw new ChessException("There is no move to redo");
+		}
+		switchClock(opponent(currentPlayer));
+		MoveRecord record = redoStack[--redoCount];
+		redoStack[redoCount] = null;
+		history[ply] = record;
+		doMove(record.move);
+		gameState = record.gameStateAfter;
+		if (clock != null && isGameOver()) {
+			clock.stop();
 		}
 		
-		return (ChessPiece)capturedPiece;
+		if (spectatorFeed != null) {
+			spectatorFeed.publish(record.event);
+		}
 	}
 	
 	public ChessPiece replacePromotedPiece(String type) {
 		if (promoted == null) {
 			throw new IllegalStateException("There is no piece to be promoted");
 		}
-		if (!type.equals("B") && type.equals("N") && type.equals("Q")) {
+		if (!type.equals("B") && !type.equals("N") && !type.equals("R") && !type.equals("Q")) {
 			throw new InvalidParameterException("Invalid type for promotion");
 		}
-		Position pos = promoted.getChessPosition().toPosition();
-		Piece p = board.removePiece(pos);
+		int square = promoted.getChessPosition().getSquare();
+		ChessPiece p = takePiece(square);
 		piecesOnTheBoard.remove(p);
 		
-		ChessPiece newPiece = newPiece(type, promoted.getColor());
-		board.placePiece(newPiece, pos);
+		ChessPiece newPiece = newPiece(pieceType(type), promoted.getColor());
+		putPiece(newPiece, square);
 		piecesOnTheBoard.add(newPiece);
+		promoted = newPiece;
+		
+		// the last move now promotes to the new piece, which may change check and the game result
+		MoveRecord last = history[ply - 1];
+		last.move = Move.withPromotion(last.move, newPiece.getType());
+		last.promotionPiece = newPiece;
+		redoCount = 0;
+		check = testCheck();
+		positionChanged();
+		gameState = testGameState();
+		last.gameStateAfter = gameState;
+		last.event = moveEvent(last);
+		
+		if (spectatorFeed != null) {
+			int flags = MoveEvent.PROMOTION_REPLACED | (check ? MoveEvent.CHECK : 0) | (getCheckMate() ? MoveEvent.CHECKMATE : 0);
+			spectatorFeed.publish(MoveEvent.encode(square, square, MoveEvent.NONE, MoveEvent.typeOf(newPiece), flags));
+		}
 		
 		return newPiece;
 	}
 	
-	private ChessPiece newPiece(String type, Color color) {
-		if (type.equals("B")) return new Bishop(board, color);
-		if (type.equals("N")) return new Knight(board, color);
-		if (type.equals("Q")) return new Queen(board, color);
-		return new Rook(board, color);
+	private PieceType pieceType(String type) {
+		if (type.equals("B")) return PieceType.BISHOP;
+		if (type.equals("N")) return PieceType.KNIGHT;
+		if (type.equals("Q")) return PieceType.QUEEN;
+		return PieceType.ROOK;
 	}
-
+	
+	private ChessPiece newPiece(PieceType type, Color color) {
+		return acquirePiece(type, color);
+	}
+	
+	// A piece off the board: one this match made before and no longer uses, or a new one.
+	private ChessPiece acquirePiece(PieceType type, Color color) {
+		int i = color.ordinal() * 6 + type.ordinal();
+		List<ChessPiece> owned = ownedPieces.get(i);
+		ChessPiece piece;
+		if (usedPieces[i] < owned.size()) {
+			piece = owned.get(usedPieces[i]);
+			piece.resetMoveCount();
+		}
+		else {
+			piece = createPiece(type, color);
+			owned.add(piece);
+		}
+		usedPieces[i]++;
+		return piece;
+	}
+	
+	// Gives back the piece acquired last of its kind, as when a promotion is unmade, so searches
+	// through promotions do not pile up pieces. Any other piece stays in use until the next reset.
+	private void releasePiece(ChessPiece piece) {
+		int i = piece.getColor().ordinal() * 6 + piece.getType().ordinal();
+		if (usedPieces[i] > 0 && ownedPieces.get(i).get(usedPieces[i] - 1) == piece) {
+			usedPieces[i]--;
+		}
+	}
+	
+	private ChessPiece createPiece(PieceType type, Color color) {
+		switch (type) {
+		case PAWN:
+			return new Pawn(board, color, this);
+		case KNIGHT:
+			return new Knight(board, color);
+		case BISHOP:
+			return new Bishop(board, color);
+		case ROOK:
+			return new Rook(board, color);
+		case QUEEN:
+			return new Queen(board, color);
+		default:
+			return new King(board, color, this);
+		}
+	}
+	
 	private void nextTurn() {
 		turn++;
 		currentPlayer = (currentPlayer == Color.WHITE) ? Color.BLACK : Color.WHITE;
@@ -340,15 +1459,20 @@ public class ChessMatch {
 		if (currentPlayer != ((ChessPiece)board.piece(position)).getColor()){
 			throw new ChessException("The chosen piece is not yours");
 		}
-		if (!board.piece(position).isThereAnyPossibleMove()) {
+		if (!hasLegalMoveFrom(ChessPosition.fromPosition(position).getSquare())) {
 			throw new ChessException("There is no possible moves for the chosen piece");
 		}
 	}
 	
 	private void ValidateTargetPosition(Position source, Position target) {
-		if (!board.piece(source).possibleMove(target)) {
+		int from = ChessPosition.fromPosition(source).getSquare();
+		int to = ChessPosition.fromPosition(target).getSquare();
+		if (findLegalMove(Move.encode(from, to)) == Move.NONE && findLegalMove(Move.encode(from, to, PieceType.QUEEN)) == Move.NONE) {
+			if (board.piece(source).possibleMove(target)) {
+				throw new ChessException("You can't put yourself in check");
+			}
 			throw new ChessException("The chosen piece can't move to target position");
 		}
 	}
-	
+
 }
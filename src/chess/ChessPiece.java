@@ -19,6 +19,8 @@ public abstract class ChessPiece extends Piece{
 		return color;
 	}
 	
+	public abstract PieceType getType();
+	
 	public int getMoveCount() {
 		return moveCount;
 	}
@@ -31,6 +33,10 @@ public abstract class ChessPiece extends Piece{
 		moveCount--;
 	}
 	
+	void resetMoveCount() {
+		moveCount = 0;
+	}
+	
 	public ChessPosition getChessPosition() {
 		return ChessPosition.fromPosition(position);
 	}
@@ -39,4 +45,94 @@ public abstract class ChessPiece extends Piece{
 		ChessPiece p = (ChessPiece)getBoard().piece(position);
 		return p != null && p.getColor() != color;
 	}
+	
+	protected boolean isOpponent(Piece p) {
+		return p != null && p != Board.OFF_BOARD && ((ChessPiece)p).getColor() != color;
+	}
+	
+	// Kinds of moves to generate: captures and promotions, everything else, or both.
+	public static final int NOISY_MOVES = 1;
+	public static final int QUIET_MOVES = 2;
+	public static final int ALL_MOVES = NOISY_MOVES | QUIET_MOVES;
+	
+	public void generateMoves(MoveList moves) {
+		generateMoves(moves, ALL_MOVES);
+	}
+	
+	public abstract void generateMoves(MoveList moves, int kinds);
+	
+	// The matrix view of generateMoves, kept for the position-based API.
+	@Override
+	public boolean[][] possibleMoves() {
+		int columns = getBoard().getColumns();
+		boolean[][] mat = new boolean[getBoard().getRows()][columns];
+		MoveList moves = new MoveList(32);
+		generateMoves(moves);
+		for (int i = 0; i < moves.size(); i++) {
+			int to = Move.to(moves.get(i));
+			mat[to / columns][to % columns] = true;
+		}
+		return mat;
+	}
+	
+	// Converts a board (mailbox) square to the row-major square used by moves. Moves hold 6-bit
+	// squares, so chess pieces need a board of at most 64 squares; ChessMatch always plays on 8x8.
+	protected int toSquare(int boardSquare) {
+		return getBoard().rowOf(boardSquare) * getBoard().getColumns() + getBoard().columnOf(boardSquare);
+	}
+	
+	protected void addMove(MoveList moves, int target, int flags) {
+		moves.add(Move.encode(toSquare(square), toSquare(target), flags));
+	}
+	
+	// Walks one ray of the mailbox until the first occupied square; a sentinel ends the ray.
+	protected void slide(MoveList moves, int kinds, int direction) {
+		Board board = getBoard();
+		int sq = square + direction;
+		Piece p;
+		while ((p = board.pieceAt(sq)) == null) {
+			if ((kinds & QUIET_MOVES) != 0) {
+				addMove(moves, sq, Move.QUIET);
+			}
+			sq += direction;
+		}
+		if ((kinds & NOISY_MOVES) != 0 && isOpponent(p)) {
+			addMove(moves, sq, Move.CAPTURE);
+		}
+	}
+	
+	protected void step(MoveList moves, int kinds, int direction) {
+		int sq = square + direction;
+		Piece p = getBoard().pieceAt(sq);
+		if (p == null) {
+			if ((kinds & QUIET_MOVES) != 0) {
+				addMove(moves, sq, Move.QUIET);
+			}
+		}
+		else if ((kinds & NOISY_MOVES) != 0 && isOpponent(p)) {
+			addMove(moves, sq, Move.CAPTURE);
+		}
+	}
+	
+	// Number of squares the piece attacks that are not taken by its own side, for the evaluation.
+	public int mobility() {
+		return 0;
+	}
+	
+	protected int countSlide(int direction) {
+		Board board = getBoard();
+		int sq = square + direction;
+		int count = 0;
+		Piece p;
+		while ((p = board.pieceAt(sq)) == null) {
+			count++;
+			sq += direction;
+		}
+		return isOpponent(p) ? count + 1 : count;
+	}
+	
+	protected int countStep(int direction) {
+		Piece p = getBoard().pieceAt(square + direction);
+		return (p == null || isOpponent(p)) ? 1 : 0;
+	}
 }
@@ -4,8 +4,18 @@ import boardgame.Position;
 
 public class ChessPosition {
 	
-	private char column;
-	private Integer row;
+	// the 64 canonical squares, indexed like the board: a8 = 0, h1 = 63
+	private static final ChessPosition[] SQUARES = new ChessPosition[64];
+	
+	static {
+		for (int i = 0; i < 64; i++) {
+			SQUARES[i] = new ChessPosition((char)('a' + i % 8), 8 - i / 8);
+		}
+	}
+	
+	private final char column;
+	private final int row;
+	private final Position position;
 	
 	public ChessPosition(char column, Integer row) {
 		if (column < 'a' || column > 'h' || row < 1 || row > 8) {
@@ -13,6 +23,22 @@ public class ChessPosition {
 		}
 		this.column = column;
 		this.row = row;
+		position = Position.of(8 - row, column - 'a');
+	}
+	
+	public static ChessPosition of(char column, int row) {
+		if (column < 'a' || column > 'h' || row < 1 || row > 8) {
+			throw new ChessException("Error instantiating ChessPosition. Valid values are from a1 to h8.");
+		}
+		return SQUARES[(8 - row) * 8 + column - 'a'];
+	}
+	
+	public static ChessPosition fromSquare(int square) {
+		return SQUARES[square];
+	}
+	
+	public int getSquare() {
+		return (8 - row) * 8 + column - 'a';
 	}
 
 	public char getColumn() {
@@ -24,12 +50,11 @@ public class ChessPosition {
 	}
 	
 	protected Position toPosition() {
-		return new Position(8 - row, column - 'a');
+		return position;
 	}
 
 	protected static ChessPosition fromPosition(Position position) {
-		return new ChessPosition((char)('a' + position.getColumn()), 8 - position.getRow());
-		
+		return SQUARES[position.getRow() * 8 + position.getColumn()];
 	}
 	
 	@Override
@@ -0,0 +1,11 @@
+package chess;
+
+public enum GameState {
+	IN_PROGRESS,
+	CHECKMATE,
+	STALEMATE,
+	THREEFOLD_REPETITION,
+	FIFTY_MOVE_RULE,
+	INSUFFICIENT_MATERIAL,
+	TIME_FORFEIT;
+}
@@ -0,0 +1,34 @@
+package chess;
+
+// Legal moves of the side to move in one position, dropped as soon as the position version changes.
+final class LegalMoveCache {
+
+	private long version = -1;
+	private final MoveList moves = new MoveList();
+	private long hits;
+	private long misses;
+
+	MoveList get(long version) {
+		if (this.version == version) {
+			hits++;
+			return moves;
+		}
+		misses++;
+		return null;
+	}
+
+	// Returns the emptied list to be filled for the given version.
+	MoveList reset(long version) {
+		this.version = version;
+		moves.clear();
+		return moves;
+	}
+
+	long getHits() {
+		return hits;
+	}
+
+	long getMisses() {
+		return misses;
+	}
+}
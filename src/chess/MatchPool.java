@@ -0,0 +1,85 @@
+package chess;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Bounded pool of finished matches, for servers that start and end games at a high rate. A
+ * released match is reset on the releasing thread and handed out again by acquire(), so a new
+ * game reuses the board, pieces and history of an old one. When the pool is full a released
+ * match is left to the garbage collector; when it is empty acquire() makes a new one. The pool
+ * is thread-safe; the matches are not, and must not be touched after they are released.
+ */
+public class MatchPool {
+
+	private final BlockingQueue<ChessMatch> idle;
+	private final AtomicLong created = new AtomicLong();
+	private final AtomicLong reused = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+
+	public MatchPool(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Invalid pool capacity: " + capacity);
+		}
+		idle = new ArrayBlockingQueue<>(capacity);
+	}
+
+	// A match at the initial setup.
+	public ChessMatch acquire() {
+		ChessMatch match = idle.poll();
+		if (match == null) {
+			created.incrementAndGet();
+			return new ChessMatch();
+		}
+		reused.incrementAndGet();
+		return match;
+	}
+
+	// A match at the given position; throws ChessException for an invalid FEN, keeping the match pooled.
+	public ChessMatch acquire(String fen) {
+		ChessMatch match = idle.poll();
+		if (match == null) {
+			created.incrementAndGet();
+			return new ChessMatch(fen);
+		}
+		try {
+			match.reset(fen);
+		}
+		catch (ChessException e) {
+			// reset(fen) left it at the initial setup, as the pool keeps them
+			idle.offer(match);
+			throw e;
+		}
+		reused.incrementAndGet();
+		return match;
+	}
+
+	public void release(ChessMatch match) {
+		match.reset();
+		if (!idle.offer(match)) {
+			dropped.incrementAndGet();
+		}
+	}
+
+	public int getIdle() {
+		return idle.size();
+	}
+
+	public long getCreated() {
+		return created.get();
+	}
+
+	public long getReused() {
+		return reused.get();
+	}
+
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d idle, %d created, %d reused, %d dropped", getIdle(), getCreated(), getReused(), getDropped());
+	}
+}
@@ -0,0 +1,136 @@
+package chess;
+
+/*
+ * Moves packed into the low 16 bits of an int: bits 0-5 source square, 6-11 target square
+ * (ChessPosition.getSquare(), a8 = 0) and 12-15 flags. Six bits per square tie moves, and so
+ * the chess layer, to the 8x8 board even though boardgame.Board takes any size. The flags follow the usual layout:
+ * bit 2 marks captures, bit 3 promotions (the low two bits then select knight, bishop,
+ * rook or queen), and the remaining values mark double pawn pushes, castling and en passant.
+ */
+public final class Move {
+
+	public static final int NONE = 0;
+
+	public static final int QUIET = 0;
+	public static final int DOUBLE_PAWN_PUSH = 1;
+	public static final int KING_CASTLE = 2;
+	public static final int QUEEN_CASTLE = 3;
+	public static final int CAPTURE = 4;
+	public static final int EN_PASSANT = 5;
+	public static final int PROMOTION = 8;
+	public static final int PROMOTION_CAPTURE = 12;
+
+	private static final PieceType[] PROMOTION_TYPES = { PieceType.KNIGHT, PieceType.BISHOP, PieceType.ROOK, PieceType.QUEEN };
+
+	private Move() {
+	}
+
+	public static int encode(int from, int to) {
+		return from | (to << 6);
+	}
+
+	public static int encode(int from, int to, PieceType promotion) {
+		return from | (to << 6) | (promotionFlag(promotion) << 12);
+	}
+
+	public static int encode(int from, int to, int flags) {
+		return from | (to << 6) | (flags << 12);
+	}
+
+	public static int encode(ChessPosition from, ChessPosition to) {
+		return encode(from.getSquare(), to.getSquare());
+	}
+
+	public static boolean isValid(int move) {
+		return (move & ~0xFFFF) == 0;
+	}
+
+	public static int from(int move) {
+		return move & 0x3F;
+	}
+
+	public static int to(int move) {
+		return (move >>> 6) & 0x3F;
+	}
+
+	public static int flags(int move) {
+		return (move >>> 12) & 0xF;
+	}
+
+	public static boolean isPromotion(int move) {
+		return (flags(move) & PROMOTION) != 0;
+	}
+
+	public static boolean isCapture(int move) {
+		return (flags(move) & CAPTURE) != 0;
+	}
+
+	public static boolean isCastling(int move) {
+		int flags = flags(move);
+		return flags == KING_CASTLE || flags == QUEEN_CASTLE;
+	}
+
+	public static boolean isEnPassant(int move) {
+		return flags(move) == EN_PASSANT;
+	}
+
+	public static PieceType promotion(int move) {
+		return isPromotion(move) ? PROMOTION_TYPES[flags(move) & 3] : null;
+	}
+
+	public static int withPromotion(int move, PieceType promotion) {
+		return (move & 0x4FFF) | (promotionFlag(promotion) << 12);
+	}
+
+	// Same squares and promotion piece; the other flags are derived by move generation.
+	public static boolean matches(int move, int request) {
+		return (move & 0xFFF) == (request & 0xFFF) && promotion(move) == promotion(request);
+	}
+
+	private static int promotionFlag(PieceType type) {
+		switch (type) {
+		case KNIGHT:
+			return PROMOTION;
+		case BISHOP:
+			return PROMOTION | 1;
+		case ROOK:
+			return PROMOTION | 2;
+		case QUEEN:
+			return PROMOTION | 3;
+		default:
+			throw new IllegalArgumentException("Invalid type for promotion: " + type);
+		}
+	}
+
+	// Parses coordinate notation such as "e2e4" or "e7e8q".
+	public static int parse(String s) {
+		if (s.length() < 4 || s.length() > 5) {
+			throw new ChessException("Invalid move: " + s);
+		}
+		int from = ChessPosition.of(s.charAt(0), s.charAt(1) - '0').getSquare();
+		int to = ChessPosition.of(s.charAt(2), s.charAt(3) - '0').getSquare();
+		if (s.length() == 4) {
+			return encode(from, to);
+		}
+		switch (Character.toLowerCase(s.charAt(4))) {
+		case 'n':
+			return encode(from, to, PieceType.KNIGHT);
+		case 'b':
+			return encode(from, to, PieceType.BISHOP);
+		case 'r':
+			return encode(from, to, PieceType.ROOK);
+		case 'q':
+			return encode(from, to, PieceType.QUEEN);
+		default:
+			throw new ChessException("Invalid promotion in move: " + s);
+		}
+	}
+
+	public static String toString(int move) {
+		String s = ChessPosition.fromSquare(from(move)).toString() + ChessPosition.fromSquare(to(move));
+		if (isPromotion(move)) {
+			s += "nbrq".charAt(flags(move) & 3);
+		}
+		return s;
+	}
+}
@@ -0,0 +1,73 @@
+package chess;
+
+import java.util.Arrays;
+
+public class MoveList {
+
+	private int[] moves;
+	private int size;
+
+	public MoveList() {
+		this(256);
+	}
+
+	public MoveList(int capacity) {
+		moves = new int[capacity];
+	}
+
+	public void add(int move) {
+		if (size == moves.length) {
+			moves = Arrays.copyOf(moves, size * 2);
+		}
+		moves[size++] = move;
+	}
+
+	public int get(int index) {
+		return moves[index];
+	}
+
+	public void set(int index, int move) {
+		moves[index] = move;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void clear() {
+		size = 0;
+	}
+
+	public void truncate(int size) {
+		this.size = size;
+	}
+
+	public int indexOf(int move) {
+		for (int i = 0; i < size; i++) {
+			if (moves[i] == move) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	public int[] toArray() {
+		return Arrays.copyOf(moves, size);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("[");
+		for (int i = 0; i < size; i++) {
+			if (i > 0) {
+				sb.append(", ");
+			}
+			sb.append(Move.toString(moves[i]));
+		}
+		return sb.append("]").toString();
+	}
+}
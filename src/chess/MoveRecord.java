@@ -0,0 +1,24 @@
+package chess;
+
+// One entry of the match history: the move plus the irreversible state needed to unmake it.
+// Records are reused as the history grows and shrinks, so they hold no constructor state.
+final class MoveRecord {
+
+	int move;
+	ChessPiece captured;
+	ChessPiece promotedPawn;
+	ChessPiece promotionPiece;
+
+	int turnBefore;
+	boolean checkBefore;
+	ChessPiece enPassantBefore;
+	ChessPiece promotedBefore;
+	int castlingRightsBefore;
+	int halfmoveClockBefore;
+	long keyBefore;
+	long versionBefore;
+	GameState gameStateBefore;
+
+	GameState gameStateAfter;
+	int event;
+}
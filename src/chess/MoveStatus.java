@@ -0,0 +1,12 @@
+package chess;
+
+public enum MoveStatus {
+	OK,
+	INVALID_ENCODING,
+	NO_PIECE,
+	NOT_YOUR_PIECE,
+	ILLEGAL_MOVE,
+	INVALID_PROMOTION,
+	GAME_OVER,
+	CLOCK_STOPPED;
+}
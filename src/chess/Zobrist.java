@@ -0,0 +1,36 @@
+package chess;
+
+import java.util.SplittableRandom;
+
+final class Zobrist {
+
+	static final long[][][] PIECES = new long[2][6][64];
+	static final long[] CASTLING = new long[16];
+	static final long[] EN_PASSANT_FILE = new long[8];
+	static final long BLACK_TO_MOVE;
+
+	static {
+		SplittableRandom random = new SplittableRandom(0x5EED_C0FFEEL);
+		for (int c = 0; c < 2; c++) {
+			for (int t = 0; t < 6; t++) {
+				for (int sq = 0; sq < 64; sq++) {
+					PIECES[c][t][sq] = random.nextLong();
+				}
+			}
+		}
+		for (int i = 0; i < CASTLING.length; i++) {
+			CASTLING[i] = random.nextLong();
+		}
+		for (int i = 0; i < EN_PASSANT_FILE.length; i++) {
+			EN_PASSANT_FILE[i] = random.nextLong();
+		}
+		BLACK_TO_MOVE = random.nextLong();
+	}
+
+	private Zobrist() {
+	}
+
+	static long piece(ChessPiece piece, int square) {
+		return PIECES[piece.getColor().ordinal()][piece.getType().ordinal()][square];
+	}
+}
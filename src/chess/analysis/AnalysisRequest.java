@@ -0,0 +1,65 @@
+package chess.analysis;
+
+import chess.ChessMatch;
+
+// A position to analyse and the limits of the analysis. The position is copied when the request
+// is created, so the caller's match may keep changing while the analysis waits or runs.
+public class AnalysisRequest {
+
+	private final ChessMatch position;
+	private int depth = 10;
+	private int multiPv = 1;
+	private long timeoutMillis;
+
+	private AnalysisRequest(ChessMatch position) {
+		this.position = position;
+	}
+
+	// Throws ChessException right away when the FEN is invalid.
+	public static AnalysisRequest ofFen(String fen) {
+		return new AnalysisRequest(new ChessMatch(fen));
+	}
+
+	public static AnalysisRequest ofMatch(ChessMatch match) {
+		return new AnalysisRequest(match.snapshot());
+	}
+
+	ChessMatch getPosition() {
+		return position;
+	}
+
+	public int getDepth() {
+		return depth;
+	}
+
+	public void setDepth(int depth) {
+		if (depth < 1) {
+			throw new IllegalArgumentException("Depth must be at least 1");
+		}
+		this.depth = depth;
+	}
+
+	public int getMultiPv() {
+		return multiPv;
+	}
+
+	public void setMultiPv(int multiPv) {
+		if (multiPv < 1) {
+			throw new IllegalArgumentException("Multi-PV must be at least 1");
+		}
+		this.multiPv = multiPv;
+	}
+
+	public long getTimeoutMillis() {
+		return timeoutMillis;
+	}
+
+	// Time from submission, queueing included, after which the search is stopped and the best result
+	// so far returned. A request still queued at its deadline fails with a TimeoutException. 0 means none.
+	public void setTimeoutMillis(long timeoutMillis) {
+		if (timeoutMillis < 0) {
+			throw new IllegalArgumentException("Timeout cannot be negative");
+		}
+		this.timeoutMillis = timeoutMillis;
+	}
+}
@@ -0,0 +1,49 @@
+package chess.analysis;
+
+import java.util.List;
+
+import chess.engine.SearchResult;
+
+public class AnalysisResult {
+
+	private final SearchResult best;
+	private final List<SearchResult> lines;
+	private final boolean timedOut;
+	private final long queueNanos;
+	private final long searchNanos;
+
+	public AnalysisResult(SearchResult best, List<SearchResult> lines, boolean timedOut, long queueNanos, long searchNanos) {
+		this.best = best;
+		this.lines = lines;
+		this.timedOut = timedOut;
+		this.queueNanos = queueNanos;
+		this.searchNanos = searchNanos;
+	}
+
+	public SearchResult getBest() {
+		return best;
+	}
+
+	// One line per requested principal variation, best first.
+	public List<SearchResult> getLines() {
+		return lines;
+	}
+
+	// Whether the deadline stopped the search before the requested depth.
+	public boolean isTimedOut() {
+		return timedOut;
+	}
+
+	public long getQueueMillis() {
+		return queueNanos / 1_000_000;
+	}
+
+	public long getSearchMillis() {
+		return searchNanos / 1_000_000;
+	}
+
+	@Override
+	public String toString() {
+		return best + (timedOut ? " (timed out)" : "") + " queue " + getQueueMillis() + "ms search " + getSearchMillis() + "ms";
+	}
+}
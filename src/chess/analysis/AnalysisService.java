@@ -0,0 +1,255 @@
+package chess.analysis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import chess.engine.ClassicalEvaluator;
+import chess.engine.Evaluator;
+import chess.engine.Search;
+import chess.engine.SearchInfo;
+import chess.engine.SearchListener;
+import chess.engine.SearchOptions;
+import chess.engine.SearchResult;
+import chess.engine.TranspositionTable;
+
+/*
+ * Runs analyses on a fixed pool of worker threads, each with its own Search and hash table,
+ * and hands back CompletableFutures so request handlers never block. At most queueCapacity
+ * requests wait for a worker; beyond that submit() fails the future at once with a
+ * RejectedExecutionException. Cancelling a future, or reaching its deadline, stops its
+ * search cooperatively.
+ */
+public class AnalysisService implements AutoCloseable {
+
+	private static final int LATENCY_SAMPLES = 4096;
+
+	private final ThreadPoolExecutor workers;
+	private final ScheduledThreadPoolExecutor deadlines;
+	private final ThreadLocal<Search> searches;
+
+	private final AtomicLong submitted = new AtomicLong();
+	private final AtomicLong rejected = new AtomicLong();
+	private final AtomicLong completed = new AtomicLong();
+	private final AtomicLong cancelled = new AtomicLong();
+	private final AtomicLong timedOut = new AtomicLong();
+	private final LatencyRecorder queueLatency = new LatencyRecorder(LATENCY_SAMPLES);
+	private final LatencyRecorder latency = new LatencyRecorder(LATENCY_SAMPLES);
+
+	public AnalysisService(int threads, int queueCapacity) {
+		this(threads, queueCapacity, 16, ClassicalEvaluator::new);
+	}
+
+	// The evaluator factory is called once per worker thread.
+	public AnalysisService(int threads, int queueCapacity, int hashMegabytes, Supplier<Evaluator> evaluators) {
+		if (threads < 1 || queueCapacity < 1) {
+			throw new IllegalArgumentException("Threads and queue capacity must be at least 1");
+		}
+		workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queueCapacity), threadFactory("analysis-"), new ThreadPoolExecutor.AbortPolicy());
+		deadlines = new ScheduledThreadPoolExecutor(1, threadFactory("analysis-deadline-"));
+		deadlines.setRemoveOnCancelPolicy(true);
+		searches = ThreadLocal.withInitial(() -> new Search(evaluators.get(), new TranspositionTable(hashMegabytes)));
+	}
+
+	private static ThreadFactory threadFactory(String prefix) {
+		AtomicInteger count = new AtomicInteger();
+		return r -> {
+			Thread thread = new Thread(r, prefix + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	public CompletableFuture<AnalysisResult> submit(AnalysisRequest request) {
+		submitted.incrementAndGet();
+		Task task = new Task(request);
+		try {
+			workers.execute(task);
+		}
+		catch (RejectedExecutionException e) {
+			rejected.incrementAndGet();
+			task.future.completeExceptionally(e);
+			return task.future;
+		}
+		if (request.getTimeoutMillis() > 0) {
+			task.deadline = deadlines.schedule(task::expire, request.getTimeoutMillis(), TimeUnit.MILLISECONDS);
+		}
+		// cancelling the future is how callers stop an analysis
+		task.future.whenComplete((result, error) -> {
+			if (task.future.isCancelled()) {
+				cancelled.incrementAndGet();
+				task.stop();
+			}
+		});
+		return task.future;
+	}
+
+	public int getQueueDepth() {
+		return workers.getQueue().size();
+	}
+
+	public int getActiveCount() {
+		return workers.getActiveCount();
+	}
+
+	public long getSubmitted() {
+		return submitted.get();
+	}
+
+	public long getRejected() {
+		return rejected.get();
+	}
+
+	public long getCompleted() {
+		return completed.get();
+	}
+
+	public long getCancelled() {
+		return cancelled.get();
+	}
+
+	public long getTimedOut() {
+		return timedOut.get();
+	}
+
+	// Time from submission to the start of the search, in milliseconds.
+	public double getQueueLatencyPercentile(double percentile) {
+		return queueLatency.percentileMillis(percentile);
+	}
+
+	// Time from submission to the result, in milliseconds.
+	public double getLatencyPercentile(double percentile) {
+		return latency.percentileMillis(percentile);
+	}
+
+	// Stops taking requests and lets the queued ones finish.
+	public void shutdown() {
+		workers.shutdown();
+		deadlines.shutdown();
+	}
+
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		return workers.awaitTermination(timeout, unit);
+	}
+
+	// Cancels the queued requests and stops the running searches.
+	@Override
+	public void close() {
+		List<Runnable> queued = new ArrayList<>();
+		workers.getQueue().drainTo(queued);
+		for (Runnable r : queued) {
+			((Task)r).future.cancel(false);
+		}
+		workers.shutdownNow();
+		deadlines.shutdownNow();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("queue %d active %d submitted %d rejected %d completed %d cancelled %d timedOut %d p50 %.1fms p99 %.1fms",
+				getQueueDepth(), getActiveCount(), getSubmitted(), getRejected(), getCompleted(), getCancelled(), getTimedOut(),
+				getLatencyPercentile(50), getLatencyPercentile(99));
+	}
+
+	private class Task implements Runnable, SearchListener {
+
+		final AnalysisRequest request;
+		final CompletableFuture<AnalysisResult> future = new CompletableFuture<>();
+		final long submittedAt = System.nanoTime();
+		volatile ScheduledFuture<?> deadline;
+		private Search search;
+		private boolean expired;
+		private boolean stopped;
+
+		Task(AnalysisRequest request) {
+			this.request = request;
+		}
+
+		@Override
+		public void run() {
+			long startedAt = System.nanoTime();
+			Search search = searches.get();
+			synchronized (this) {
+				if (stopped || future.isDone()) {
+					return;
+				}
+				this.search = search;
+			}
+			queueLatency.record(startedAt - submittedAt);
+			try {
+				SearchOptions options = new SearchOptions();
+				options.setMultiPv(request.getMultiPv());
+				search.setOptions(options);
+				search.setListener(this);
+				SearchResult best = search.search(request.getPosition(), request.getDepth());
+				long finishedAt = System.nanoTime();
+				boolean timedOut;
+				synchronized (this) {
+					this.search = null;
+					timedOut = expired;
+				}
+				latency.record(finishedAt - submittedAt);
+				if (future.complete(new AnalysisResult(best, search.getLines(), timedOut, startedAt - submittedAt, finishedAt - startedAt))) {
+					completed.incrementAndGet();
+				}
+			}
+			catch (RuntimeException e) {
+				future.completeExceptionally(e);
+			}
+			finally {
+				search.setListener(null);
+				ScheduledFuture<?> deadline = this.deadline;
+				if (deadline != null) {
+					deadline.cancel(false);
+				}
+			}
+		}
+
+		// A stop that lands just before the search resets its flag is caught here on the next line.
+		@Override
+		public synchronized void onInfo(SearchInfo info) {
+			if (stopped && search != null) {
+				search.stop();
+			}
+		}
+
+		synchronized void stop() {
+			stopped = true;
+			if (search != null) {
+				search.stop();
+			}
+			else {
+				// still waiting for a worker: free its place in the queue
+				workers.remove(this);
+			}
+		}
+
+		void expire() {
+			if (future.isDone()) {
+				return;
+			}
+			timedOut.incrementAndGet();
+			synchronized (this) {
+				expired = true;
+				if (search != null) {
+					search.stop();
+					return;
+				}
+			}
+			future.completeExceptionally(new TimeoutException("Analysis deadline passed in the queue"));
+			stop();
+		}
+	}
+}
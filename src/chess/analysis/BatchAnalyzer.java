@@ -0,0 +1,406 @@
+package chess.analysis;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+import chess.ChessException;
+import chess.ChessMatch;
+import chess.Move;
+import chess.engine.ClassicalEvaluator;
+import chess.engine.Search;
+import chess.engine.SearchOptions;
+import chess.engine.SearchResult;
+import chess.engine.TranspositionTable;
+import chess.metrics.FileFlushEvent;
+
+/*
+ * Analyses a file of FEN lines in three stages joined by bounded queues: a reader, a pool of
+ * workers each confined to its own Search, and a writer. The writer emits one tab-separated
+ * line per input line (fen, best move, score, depth, nodes), in input order unless ordered is
+ * switched off. At most `window` positions are between the reader and the writer at any time,
+ * which also bounds the results held back for reordering, so memory stays flat.
+ *
+ * Every checkpoint interval, once all the input read so far is written, the writer saves the
+ * number of input lines done and the output size; unordered, it first lets the workers drain.
+ * A run with the same checkpoint file resumes there: the output is cut back to that size and
+ * the reader skips those lines. If the reader or a worker fails, the writer stops at once,
+ * keeping the last checkpoint, and run() throws the error.
+ */
+public class BatchAnalyzer {
+
+	private static final Job END = new Job(-1, null);
+
+	private final Path input;
+	private final Path output;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private int depth = 8;
+	private long nodeLimit;
+	private int hashMegabytes = 4;
+	private boolean ordered = true;
+	private int window = 1024;
+	private Path checkpoint;
+	private long checkpointInterval = 10_000;
+	private PrintStream progress;
+	private long progressIntervalMillis = 10_000;
+
+	private volatile long processed;
+	private final AtomicLong errors = new AtomicLong();
+	private long skipped;
+	private long startTime;
+	private long endTime;
+
+	public BatchAnalyzer(Path input, Path output) {
+		this.input = input;
+		this.output = output;
+	}
+
+	public void setThreads(int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("Threads must be at least 1");
+		}
+		this.threads = threads;
+	}
+
+	public void setDepth(int depth) {
+		if (depth < 1) {
+			throw new IllegalArgumentException("Depth must be at least 1");
+		}
+		this.depth = depth;
+	}
+
+	// Nodes per position, 0 for none; the depth still applies.
+	public void setNodeLimit(long nodeLimit) {
+		if (nodeLimit < 0) {
+			throw new IllegalArgumentException("Node limit cannot be negative");
+		}
+		this.nodeLimit = nodeLimit;
+	}
+
+	public void setHashMegabytes(int hashMegabytes) {
+		this.hashMegabytes = hashMegabytes;
+	}
+
+	public void setOrdered(boolean ordered) {
+		this.ordered = ordered;
+	}
+
+	// Positions in flight between the reader and the writer.
+	public void setWindow(int window) {
+		if (window < 1) {
+			throw new IllegalArgumentException("Window must be at least 1");
+		}
+		this.window = window;
+	}
+
+	public void setCheckpoint(Path checkpoint, long interval) {
+		this.checkpoint = checkpoint;
+		this.checkpointInterval = interval;
+	}
+
+	public void setProgress(PrintStream progress, long intervalMillis) {
+		this.progress = progress;
+		this.progressIntervalMillis = intervalMillis;
+	}
+
+	// Positions written by this run, errors included.
+	public long getProcessed() {
+		return processed;
+	}
+
+	// Lines that were not valid FEN; they are written with "error" and the message.
+	public long getErrors() {
+		return errors.get();
+	}
+
+	// Input lines a resumed run skipped as already done.
+	public long getSkipped() {
+		return skipped;
+	}
+
+	public double getPositionsPerSecond() {
+		long end = (endTime == 0) ? System.nanoTime() : endTime;
+		return (end == startTime) ? 0 : processed * 1e9 / (end - startTime);
+	}
+
+	public void run() throws IOException, InterruptedException {
+		long[] resume = readCheckpoint();
+		skipped = resume[0];
+		processed = 0;
+		errors.set(0);
+		startTime = System.nanoTime();
+		endTime = 0;
+
+		BlockingQueue<Job> jobs = new ArrayBlockingQueue<>(Math.max(1, Math.min(window, threads * 4)));
+		BlockingQueue<Job> results = new ArrayBlockingQueue<>(Math.max(1, Math.min(window, threads * 4)));
+		Semaphore inFlight = new Semaphore(window);
+		Failure failure = new Failure();
+
+		Thread reader = new Thread(() -> read(jobs, inFlight, failure), "batch-reader");
+		Thread[] workers = new Thread[threads];
+		for (int i = 0; i < threads; i++) {
+			workers[i] = new Thread(() -> work(jobs, results, failure), "batch-worker-" + (i + 1));
+		}
+		reader.setDaemon(true);
+		reader.start();
+		for (Thread worker : workers) {
+			worker.setDaemon(true);
+			worker.start();
+		}
+		try {
+			write(results, inFlight, resume[1], failure);
+		}
+		finally {
+			endTime = System.nanoTime();
+			reader.interrupt();
+			for (Thread worker : workers) {
+				worker.interrupt();
+			}
+		}
+	}
+
+	private void read(BlockingQueue<Job> jobs, Semaphore inFlight, Failure failure) {
+		try (BufferedReader in = Files.newBufferedReader(input, StandardCharsets.UTF_8)) {
+			long index = 0;
+			String line;
+			while ((line = in.readLine()) != null) {
+				if (index++ < skipped) {
+					continue;
+				}
+				inFlight.acquire();
+				jobs.put(new Job(index - 1, line));
+			}
+		}
+		catch (IOException | RuntimeException e) {
+			failure.set(e);
+		}
+		catch (InterruptedException e) {
+			return;
+		}
+		try {
+			for (int i = 0; i < threads; i++) {
+				jobs.put(END);
+			}
+		}
+		catch (InterruptedException e) {
+			// the writer gave up
+		}
+	}
+
+	private void work(BlockingQueue<Job> jobs, BlockingQueue<Job> results, Failure failure) {
+		Search search = new Search(new ClassicalEvaluator(), new TranspositionTable(hashMegabytes));
+		SearchOptions options = new SearchOptions();
+		options.setNodeLimit(nodeLimit);
+		search.setOptions(options);
+		try {
+			Job job;
+			while ((job = jobs.take()) != END) {
+				job.result = analyse(search, job.line);
+				results.put(job);
+			}
+			results.put(END);
+		}
+		catch (RuntimeException e) {
+			failure.set(e);
+			try {
+				results.put(END);
+			}
+			catch (InterruptedException ie) {
+				// the writer gave up
+			}
+		}
+		catch (InterruptedException e) {
+			// the writer gave up
+		}
+	}
+
+	private String analyse(Search search, String fen) {
+		ChessMatch match;
+		try {
+			match = new ChessMatch(fen);
+		}
+		catch (ChessException e) {
+			errors.incrementAndGet();
+			return fen + "\terror\t" + e.getMessage();
+		}
+		// starting every position from empty tables keeps the output independent of the thread count
+		search.clear();
+		SearchResult result = search.search(match, depth);
+		String move = (result.getMove() == Move.NONE) ? "none" : Move.toString(result.getMove());
+		return fen + "\t" + move + "\t" + result.getScore() + "\t" + result.getDepth() + "\t" + result.getNodes();
+	}
+
+	private void write(BlockingQueue<Job> results, Semaphore inFlight, long resumeBytes, Failure failure)
+			throws IOException, InterruptedException {
+		try (FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+			channel.truncate(resumeBytes);
+			channel.position(resumeBytes);
+			BufferedWriter out = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8));
+
+			Map<Long, String> pending = new HashMap<>();
+			long next = skipped;
+			long written = skipped;
+			long lastCheckpoint = written;
+			long flushed = resumeBytes;
+			long lastProgress = System.nanoTime();
+			// unordered, a checkpoint waits for the workers to drain: the writer keeps the permits it
+			// would release until none is left outside, so the written lines are again a prefix of the input
+			boolean draining = false;
+			int held = 0;
+			int finished = 0;
+			while (finished < threads) {
+				Job job = results.take();
+				if (job == END) {
+					finished++;
+					// a failed stage sends END at once; the job it lost would stall the window for good
+					if (failure.isSet()) {
+						break;
+					}
+					continue;
+				}
+				if (ordered) {
+					pending.put(job.index, job.result);
+					String line;
+					while ((line = pending.remove(next)) != null) {
+						out.write(line);
+						out.newLine();
+						next++;
+						written++;
+						inFlight.release();
+					}
+				}
+				else {
+					out.write(job.result);
+					out.newLine();
+					written++;
+					if (draining) {
+						held++;
+					}
+					else {
+						inFlight.release();
+					}
+				}
+				processed = written - skipped;
+
+				if (checkpoint != null && written - lastCheckpoint >= checkpointInterval) {
+					draining = !ordered;
+					if (ordered || held + inFlight.availablePermits() == window) {
+						flushed = flush(out, channel, flushed, written);
+						lastCheckpoint = written;
+						inFlight.release(held);
+						held = 0;
+						draining = false;
+					}
+				}
+				if (progress != null && System.nanoTime() - lastProgress >= progressIntervalMillis * 1_000_000) {
+					lastProgress = System.nanoTime();
+					progress.printf("%d positions, %.1f positions/s%n", processed, getPositionsPerSecond());
+				}
+			}
+			flush(out, channel, flushed, -1);
+			failure.rethrow();
+			if (checkpoint != null) {
+				writeCheckpoint(written, channel.position());
+			}
+		}
+	}
+
+	// Flushes the output and, given the lines written, saves a checkpoint for them; returns the output size.
+	private long flush(BufferedWriter out, FileChannel channel, long flushed, long written) throws IOException {
+		FileFlushEvent event = FileFlushEvent.TYPE.isEnabled() ? new FileFlushEvent() : null;
+		if (event != null) {
+			event.begin();
+		}
+		out.flush();
+		long position = channel.position();
+		if (written >= 0) {
+			writeCheckpoint(written, position);
+		}
+		if (event != null && event.shouldCommit()) {
+			event.path = output.toString();
+			event.bytes = position - flushed;
+			event.checkpoint = written >= 0;
+			event.commit();
+		}
+		return position;
+	}
+
+	private long[] readCheckpoint() throws IOException {
+		if (checkpoint == null || !Files.exists(checkpoint)) {
+			return new long[] { 0, 0 };
+		}
+		String[] fields = new String(Files.readAllBytes(checkpoint), StandardCharsets.UTF_8).trim().split("\\s+");
+		try {
+			return new long[] { Long.parseLong(fields[0]), Long.parseLong(fields[1]) };
+		}
+		catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+			throw new IOException("Invalid checkpoint file: " + checkpoint);
+		}
+	}
+
+	// Written aside and moved into place, so a crash leaves either the old or the new checkpoint.
+	private void writeCheckpoint(long lines, long bytes) throws IOException {
+		Path temporary = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+		Files.write(temporary, (lines + " " + bytes + "\n").getBytes(StandardCharsets.UTF_8));
+		Files.move(temporary, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d positions (%d errors, %d skipped) at %.1f positions/s", processed, errors.get(), skipped, getPositionsPerSecond());
+	}
+
+	private static class Job {
+
+		final long index;
+		final String line;
+		String result;
+
+		Job(long index, String line) {
+			this.index = index;
+			this.line = line;
+		}
+	}
+
+	// First error from the reader or a worker, reported by run() once the writer is done.
+	private static class Failure {
+
+		private volatile Exception error;
+
+		void set(Exception e) {
+			if (error == null) {
+				error = e;
+			}
+		}
+
+		boolean isSet() {
+			return error != null;
+		}
+
+		// Only IOExceptions and RuntimeExceptions are ever set.
+		void rethrow() throws IOException {
+			Exception e = error;
+			if (e instanceof IOException) {
+				throw (IOException)e;
+			}
+			if (e instanceof RuntimeException) {
+				throw (RuntimeException)e;
+			}
+		}
+	}
+}
@@ -0,0 +1,45 @@
+package chess.analysis;
+
+import java.util.Arrays;
+
+// Keeps the most recent samples in a ring and answers percentiles over them, so the figures
+// follow the current load rather than the whole lifetime of the service.
+public class LatencyRecorder {
+
+	private final long[] samples;
+	private int next;
+	private int count;
+
+	public LatencyRecorder(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be at least 1");
+		}
+		samples = new long[capacity];
+	}
+
+	public synchronized void record(long nanos) {
+		samples[next] = nanos;
+		next = (next + 1) % samples.length;
+		if (count < samples.length) {
+			count++;
+		}
+	}
+
+	public synchronized int getCount() {
+		return count;
+	}
+
+	// Nearest-rank percentile in milliseconds, for percentile between 0 and 100; 0 without samples.
+	public double percentileMillis(double percentile) {
+		long[] sorted;
+		synchronized (this) {
+			if (count == 0) {
+				return 0;
+			}
+			sorted = Arrays.copyOf(samples, count);
+		}
+		Arrays.sort(sorted);
+		int rank = (int)Math.ceil(percentile / 100 * sorted.length);
+		return sorted[Math.max(0, Math.min(rank - 1, sorted.length - 1))] / 1e6;
+	}
+}
@@ -0,0 +1,326 @@
+package chess.analysis;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import chess.ChessMatch;
+import chess.ChessPiece;
+import chess.Move;
+import chess.MoveList;
+import chess.engine.ClassicalEvaluator;
+import chess.engine.Evaluator;
+import chess.engine.Search;
+import chess.engine.SearchOptions;
+import chess.engine.SearchResult;
+import chess.engine.StaticExchange;
+import chess.engine.TranspositionTable;
+import chess.selfplay.GameFileReader;
+import chess.selfplay.GameRecord;
+
+/*
+ * Finds puzzles, positions with a single winning move, in a game file. Games are replayed in
+ * batches on a work-stealing pool. A position becomes a candidate cheaply: the side to move has
+ * a capture that wins material by static exchange, or the move just played dropped the static
+ * evaluation. Each candidate is forked as its own task for a two-line search, and it is a
+ * puzzle when the best line wins and the second does not. Puzzles are written one per line:
+ * game id, ply, FEN, move, score, second score and the principal variation.
+ *
+ * Counters for each stage (replay, filter, verification, writing) show where the time goes.
+ */
+public class TacticMiner {
+
+	private static final int BATCH_GAMES = 32;
+
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private int depth = 6;
+	private int minPly = 8;
+	private int seeThreshold = 200;
+	private int evalJump = 200;
+	private int winningScore = 300;
+	private int secondBestLimit = 100;
+	private int maxCandidatesPerGame = 4;
+
+	private final AtomicLong games = new AtomicLong();
+	private final AtomicLong positions = new AtomicLong();
+	private final AtomicLong replayNanos = new AtomicLong();
+	private final AtomicLong candidates = new AtomicLong();
+	private final AtomicLong filterNanos = new AtomicLong();
+	private final AtomicLong verified = new AtomicLong();
+	private final AtomicLong verifyNanos = new AtomicLong();
+	private final AtomicLong searchNodes = new AtomicLong();
+	private final AtomicLong puzzles = new AtomicLong();
+	private final AtomicLong writeNanos = new AtomicLong();
+
+	private ThreadLocal<Worker> workers;
+	private BufferedWriter out;
+
+	public void setThreads(int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("Threads must be at least 1");
+		}
+		this.threads = threads;
+	}
+
+	public void setDepth(int depth) {
+		if (depth < 1) {
+			throw new IllegalArgumentException("Depth must be at least 1");
+		}
+		this.depth = depth;
+	}
+
+	// Plies from the start of a game that are never candidates.
+	public void setMinPly(int minPly) {
+		this.minPly = minPly;
+	}
+
+	// Static exchange gain, in centipawns, that makes a position a candidate.
+	public void setSeeThreshold(int seeThreshold) {
+		this.seeThreshold = seeThreshold;
+	}
+
+	// Drop of the static evaluation over one move that makes the next position a candidate.
+	public void setEvalJump(int evalJump) {
+		this.evalJump = evalJump;
+	}
+
+	// Scores the best line must reach and the second line must stay under.
+	public void setThresholds(int winningScore, int secondBestLimit) {
+		this.winningScore = winningScore;
+		this.secondBestLimit = secondBestLimit;
+	}
+
+	// Candidates verified per game, earliest first; 0 for all.
+	public void setMaxCandidatesPerGame(int maxCandidatesPerGame) {
+		this.maxCandidatesPerGame = maxCandidatesPerGame;
+	}
+
+	public long getGames() {
+		return games.get();
+	}
+
+	public long getPositions() {
+		return positions.get();
+	}
+
+	public long getCandidates() {
+		return candidates.get();
+	}
+
+	public long getVerified() {
+		return verified.get();
+	}
+
+	public long getPuzzles() {
+		return puzzles.get();
+	}
+
+	public void mine(Path gameFile, Path output) throws IOException, InterruptedException {
+		workers = ThreadLocal.withInitial(Worker::new);
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		// batches in the pool at once, so the reader cannot run ahead of the verification
+		Semaphore inFlight = new Semaphore(threads * 2);
+		List<ForkJoinTask<?>> tasks = new ArrayList<>();
+		try (GameFileReader reader = new GameFileReader(gameFile);
+				BufferedWriter writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+			out = writer;
+			long id = 0;
+			List<GameRecord> batch = new ArrayList<>(BATCH_GAMES);
+			GameRecord game;
+			while ((game = reader.next()) != null) {
+				batch.add(game);
+				if (batch.size() == BATCH_GAMES) {
+					inFlight.acquire();
+					tasks.add(pool.submit(new ReplayTask(id, batch, inFlight)));
+					id += batch.size();
+					batch = new ArrayList<>(BATCH_GAMES);
+				}
+				tasks.removeIf(ForkJoinTask::isDone);
+			}
+			if (!batch.isEmpty()) {
+				inFlight.acquire();
+				tasks.add(pool.submit(new ReplayTask(id, batch, inFlight)));
+			}
+			for (ForkJoinTask<?> task : tasks) {
+				task.join();
+			}
+		}
+		catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		finally {
+			pool.shutdownNow();
+			pool.awaitTermination(1, TimeUnit.MINUTES);
+		}
+	}
+
+	// Per-thread engine pieces; fork/join threads live as long as the pool.
+	private class Worker {
+
+		final Evaluator evaluator = new ClassicalEvaluator();
+		final StaticExchange exchange = new StaticExchange();
+		final MoveList moves = new MoveList();
+		final Search search = new Search(new ClassicalEvaluator(), new TranspositionTable(8));
+
+		Worker() {
+			SearchOptions options = new SearchOptions();
+			options.setMultiPv(2);
+			search.setOptions(options);
+		}
+	}
+
+	private class ReplayTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final long firstId;
+		private final List<GameRecord> batch;
+		private final Semaphore inFlight;
+
+		ReplayTask(long firstId, List<GameRecord> batch, Semaphore inFlight) {
+			this.firstId = firstId;
+			this.batch = batch;
+			this.inFlight = inFlight;
+		}
+
+		@Override
+		protected void compute() {
+			try {
+				List<VerifyTask> found = new ArrayList<>();
+				for (int g = 0; g < batch.size(); g++) {
+					replay(firstId + g, batch.get(g), found);
+				}
+				// the candidates are stolen by idle workers while this one verifies its own
+				invokeAll(found);
+			}
+			finally {
+				inFlight.release();
+			}
+		}
+
+		private void replay(long id, GameRecord game, List<VerifyTask> found) {
+			Worker worker = workers.get();
+			long start = System.nanoTime();
+			long filtering = 0;
+			ChessMatch match = (game.getStartFen() == null) ? new ChessMatch() : new ChessMatch(game.getStartFen());
+			int[] moves = game.getMoves();
+			int previousEval = 0;
+			int count = 0;
+			for (int ply = 0; ply <= moves.length; ply++) {
+				if (ply > 0) {
+					match.makeMove(moves[ply - 1]);
+				}
+				long filterStart = System.nanoTime();
+				int eval = worker.evaluator.evaluate(match);
+				// previousEval is from the other side's point of view
+				boolean candidate = ply >= minPly && ply < moves.length
+						&& (eval + previousEval >= evalJump || bestCapture(worker, match) >= seeThreshold);
+				previousEval = eval;
+				if (candidate && (maxCandidatesPerGame == 0 || count < maxCandidatesPerGame)) {
+					found.add(new VerifyTask(id, ply, match.toFen()));
+					count++;
+				}
+				filtering += System.nanoTime() - filterStart;
+			}
+			games.incrementAndGet();
+			positions.addAndGet(moves.length + 1);
+			candidates.addAndGet(count);
+			filterNanos.addAndGet(filtering);
+			replayNanos.addAndGet(System.nanoTime() - start - filtering);
+		}
+
+		private int bestCapture(Worker worker, ChessMatch match) {
+			MoveList moves = worker.moves;
+			moves.clear();
+			match.generateMoves(moves, ChessPiece.NOISY_MOVES);
+			int best = Integer.MIN_VALUE;
+			for (int i = 0; i < moves.size(); i++) {
+				int move = moves.get(i);
+				if (Move.isCapture(move)) {
+					best = Math.max(best, worker.exchange.see(match, move));
+				}
+			}
+			return best;
+		}
+	}
+
+	private class VerifyTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final long gameId;
+		private final int ply;
+		private final String fen;
+
+		VerifyTask(long gameId, int ply, String fen) {
+			this.gameId = gameId;
+			this.ply = ply;
+			this.fen = fen;
+		}
+
+		@Override
+		protected void compute() {
+			Search search = workers.get().search;
+			long start = System.nanoTime();
+			SearchResult best = search.search(new ChessMatch(fen), depth);
+			List<SearchResult> lines = search.getLines();
+			verifyNanos.addAndGet(System.nanoTime() - start);
+			verified.incrementAndGet();
+			searchNodes.addAndGet(search.getNodes());
+			// a forced reply is no puzzle, however good
+			if (lines.size() < 2 || best.getScore() < winningScore || lines.get(1).getScore() >= secondBestLimit) {
+				return;
+			}
+			StringBuilder sb = new StringBuilder();
+			sb.append(gameId).append('\t').append(ply).append('\t').append(fen).append('\t').append(Move.toString(best.getMove()))
+					.append('\t').append(best.getScore()).append('\t').append(lines.get(1).getScore()).append('\t');
+			int[] pv = best.getPv();
+			for (int i = 0; i < pv.length; i++) {
+				sb.append(i == 0 ? "" : " ").append(Move.toString(pv[i]));
+			}
+			write(sb.toString());
+		}
+	}
+
+	private void write(String line) {
+		long start = System.nanoTime();
+		try {
+			synchronized (out) {
+				out.write(line);
+				out.newLine();
+			}
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		puzzles.incrementAndGet();
+		writeNanos.addAndGet(System.nanoTime() - start);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("replay %d games %d positions (%.0f positions/s per thread)%n"
+				+ "filter %d candidates (%.0f positions/s per thread)%n"
+				+ "verify %d searches %d nodes (%.1f searches/s per thread)%n"
+				+ "write %d puzzles (%.1f ms total)",
+				games.get(), positions.get(), rate(positions.get(), replayNanos.get()),
+				candidates.get(), rate(positions.get(), filterNanos.get()),
+				verified.get(), searchNodes.get(), rate(verified.get(), verifyNanos.get()),
+				puzzles.get(), writeNanos.get() / 1e6);
+	}
+
+	private static double rate(long count, long nanos) {
+		return (nanos == 0) ? 0 : count * 1e9 / nanos;
+	}
+}
@@ -0,0 +1,22 @@
+package chess.clock;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Time that only moves when told to.
+public class FakeTimeSource implements TimeSource {
+
+	private final AtomicLong now = new AtomicLong();
+
+	@Override
+	public long nanoTime() {
+		return now.get();
+	}
+
+	public void advance(long duration, TimeUnit unit) {
+		if (duration < 0) {
+			throw new IllegalArgumentException("Time cannot go back: " + duration);
+		}
+		now.addAndGet(unit.toNanos(duration));
+	}
+}
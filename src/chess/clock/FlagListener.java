@@ -0,0 +1,9 @@
+package chess.clock;
+
+import chess.Color;
+
+// Told on the timing wheel thread when a side runs out of time; must not block.
+public interface FlagListener {
+
+	void onFlagFall(GameClock clock, Color side);
+}
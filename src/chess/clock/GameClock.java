@@ -0,0 +1,210 @@
+package chess.clock;
+
+import java.util.concurrent.TimeUnit;
+
+import chess.Color;
+
+/*
+ * Chess clock of one match. ChessMatch punches it on every move, which charges the mover for the
+ * time since the last punch (less the delay, in delay mode), adds the increment and starts the
+ * opponent's time. A clock given a timing wheel keeps one timeout there for the running side's
+ * flag, moved on every punch, so flag-fall is reported even when nobody moves. The match thread
+ * and the wheel thread both use it, hence the locking.
+ */
+public class GameClock {
+
+	private final TimeControl control;
+	private final TimeSource time;
+	// time left by Color ordinal, as of the last punch
+	private final long[] remaining = new long[2];
+	private Color running;
+	private long turnStart;
+	private Color flagged;
+
+	private TimingWheel wheel;
+	private FlagListener listener;
+	private TimingWheel.Timeout flagTimeout;
+
+	public GameClock(TimeControl control) {
+		this(control, TimeSource.SYSTEM);
+	}
+
+	public GameClock(TimeControl control, TimeSource time) {
+		this.control = control;
+		this.time = time;
+		remaining[0] = control.getBaseNanos();
+		remaining[1] = control.getBaseNanos();
+	}
+
+	public TimeControl getTimeControl() {
+		return control;
+	}
+
+	// Watches the running side's flag on the wheel; the listener hears of it on the wheel thread.
+	public synchronized void setTimer(TimingWheel wheel, FlagListener listener) {
+		this.wheel = wheel;
+		this.listener = listener;
+		scheduleFlag();
+	}
+
+	// Starts the time of the side to move; does nothing if the clock already runs or a flag fell.
+	public synchronized void start(Color side) {
+		if (running != null || flagged != null) {
+			return;
+		}
+		running = side;
+		turnStart = time.nanoTime();
+		scheduleFlag();
+	}
+
+	public synchronized void stop() {
+		if (running != null) {
+			remaining[running.ordinal()] -= charge(time.nanoTime() - turnStart);
+			running = null;
+		}
+		cancelFlag();
+	}
+
+	public synchronized boolean isRunning() {
+		return running != null;
+	}
+
+	/*
+	 * Ends the mover's turn and starts the opponent's. Returns false, leaving the clock as it is,
+	 * if the mover's time is not running; that is, if it was stopped or a flag fell, the mover's
+	 * own flag included when its time ran out before the punch.
+	 */
+	public synchronized boolean punch(Color mover) {
+		if (flagged != null || running != mover) {
+			return false;
+		}
+		long now = time.nanoTime();
+		long left = remaining[mover.ordinal()] - charge(now - turnStart);
+		if (left <= 0) {
+			flag(mover);
+			return false;
+		}
+		if (control.getMode() == TimeControl.Mode.INCREMENT) {
+			left += control.getBonusNanos();
+		}
+		remaining[mover.ordinal()] = left;
+		running = (mover == Color.WHITE) ? Color.BLACK : Color.WHITE;
+		turnStart = now;
+		scheduleFlag();
+		return true;
+	}
+
+	/*
+	 * Gives the turn to the side without a move being made, as when a move is taken back: the
+	 * running side is charged its time, with no increment, and the side's time starts, also on a
+	 * stopped clock. Returns false, and the turn stays, if a flag fell, the running side's included.
+	 */
+	public synchronized boolean switchTo(Color side) {
+		if (flagged != null) {
+			return false;
+		}
+		if (running == side) {
+			return true;
+		}
+		long now = time.nanoTime();
+		if (running != null) {
+			long left = remaining[running.ordinal()] - charge(now - turnStart);
+			if (left <= 0) {
+				flag(running);
+				return false;
+			}
+			remaining[running.ordinal()] = left;
+		}
+		running = side;
+		turnStart = now;
+		scheduleFlag();
+		return true;
+	}
+
+	// Side whose flag fell, looking at the time now; null while both have time left.
+	public synchronized Color checkFlag() {
+		if (flagged == null && running != null && remainingNanos(running) <= 0) {
+			flag(running);
+		}
+		return flagged;
+	}
+
+	public synchronized Color getFlagged() {
+		return flagged;
+	}
+
+	// Time left to the side, counting down while it runs.
+	public synchronized long remainingNanos(Color side) {
+		long left = remaining[side.ordinal()];
+		if (side == running) {
+			left -= charge(time.nanoTime() - turnStart);
+		}
+		return Math.max(left, 0);
+	}
+
+	public long remainingMillis(Color side) {
+		return TimeUnit.NANOSECONDS.toMillis(remainingNanos(side));
+	}
+
+	// the part of a turn that counts against the clock
+	private long charge(long elapsed) {
+		if (control.getMode() == TimeControl.Mode.DELAY) {
+			return Math.max(elapsed - control.getBonusNanos(), 0);
+		}
+		return elapsed;
+	}
+
+	private void flag(Color side) {
+		remaining[side.ordinal()] = 0;
+		flagged = side;
+		running = null;
+		cancelFlag();
+	}
+
+	private void scheduleFlag() {
+		cancelFlag();
+		if (wheel == null || running == null) {
+			return;
+		}
+		long delay = remaining[running.ordinal()] - (time.nanoTime() - turnStart);
+		if (control.getMode() == TimeControl.Mode.DELAY) {
+			delay += control.getBonusNanos();
+		}
+		flagTimeout = wheel.schedule(this::onTimeout, delay, TimeUnit.NANOSECONDS);
+	}
+
+	private void cancelFlag() {
+		if (flagTimeout != null) {
+			flagTimeout.cancel();
+			flagTimeout = null;
+		}
+	}
+
+	// On the wheel thread. A punch that got in first has already moved the timeout, so only a
+	// flag still found down is reported, and then outside the lock.
+	private void onTimeout() {
+		Color side;
+		FlagListener l;
+		synchronized (this) {
+			Color before = flagged;
+			side = checkFlag();
+			if (side == null || before != null) {
+				return;
+			}
+			l = listener;
+		}
+		if (l != null) {
+			l.onFlagFall(this, side);
+		}
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("white %s, black %s", format(remainingNanos(Color.WHITE)), format(remainingNanos(Color.BLACK)));
+	}
+
+	private static String format(long nanos) {
+		long tenths = TimeUnit.NANOSECONDS.toMillis(nanos) / 100;
+		return String.format("%d:%02d.%d", tenths / 600, tenths / 10 % 60, tenths % 10);
+	}
+}
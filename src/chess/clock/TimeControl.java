@@ -0,0 +1,55 @@
+package chess.clock;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Base time per side plus a per-move bonus. With an increment (Fischer) the bonus is added after
+ * each move; with a delay (simple, US style) the clock only starts to run once the bonus has
+ * passed, so a move never gains time.
+ */
+public final class TimeControl {
+
+	public enum Mode {
+		INCREMENT,
+		DELAY
+	}
+
+	private final Mode mode;
+	private final long baseNanos;
+	private final long bonusNanos;
+
+	private TimeControl(Mode mode, long baseMillis, long bonusMillis) {
+		if (baseMillis <= 0 || bonusMillis < 0) {
+			throw new IllegalArgumentException("Invalid time control: " + baseMillis + " ms, " + bonusMillis + " ms per move");
+		}
+		this.mode = mode;
+		this.baseNanos = TimeUnit.MILLISECONDS.toNanos(baseMillis);
+		this.bonusNanos = TimeUnit.MILLISECONDS.toNanos(bonusMillis);
+	}
+
+	public static TimeControl increment(long baseMillis, long incrementMillis) {
+		return new TimeControl(Mode.INCREMENT, baseMillis, incrementMillis);
+	}
+
+	public static TimeControl delay(long baseMillis, long delayMillis) {
+		return new TimeControl(Mode.DELAY, baseMillis, delayMillis);
+	}
+
+	public Mode getMode() {
+		return mode;
+	}
+
+	public long getBaseNanos() {
+		return baseNanos;
+	}
+
+	public long getBonusNanos() {
+		return bonusNanos;
+	}
+
+	@Override
+	public String toString() {
+		return TimeUnit.NANOSECONDS.toSeconds(baseNanos) + (mode == Mode.INCREMENT ? "+" : " d")
+				+ TimeUnit.NANOSECONDS.toSeconds(bonusNanos);
+	}
+}
@@ -0,0 +1,10 @@
+package chess.clock;
+
+// Monotonic time in nanoseconds, as from System.nanoTime(); clocks and the timing wheel take one
+// so that tests can drive them with a FakeTimeSource.
+public interface TimeSource {
+
+	TimeSource SYSTEM = System::nanoTime;
+
+	long nanoTime();
+}
@@ -0,0 +1,270 @@
+package chess.clock;
+
+import java.io.Closeable;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * Hashed timing wheel (Varghese and Lauck): a ring of buckets, one per tick, each holding a
+ * doubly linked list of timeouts along with the number of whole turns of the wheel they still
+ * have to wait. Scheduling and cancelling are O(1) from any thread: both only add to a lock-free
+ * queue, which the wheel drains into or out of the buckets on its next tick. A timeout fires at
+ * the end of the tick its deadline falls in, so up to one tick late and never early.
+ *
+ * start() runs the wheel on its own thread against the time source. Without it, advance() does
+ * the work of the elapsed ticks on the caller's thread, which is how tests drive the wheel with
+ * a FakeTimeSource. Tasks run on the wheel thread and must be short.
+ */
+public class TimingWheel implements Closeable {
+
+	private static final int WAITING = 0;
+	private static final int CANCELLED = 1;
+	private static final int EXPIRED = 2;
+
+	private final TimeSource time;
+	private final long tickNanos;
+	private final Bucket[] wheel;
+	private final int mask;
+	private final long startTime;
+	private final Queue<Timeout> scheduled = new ConcurrentLinkedQueue<>();
+	private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger pending = new AtomicInteger();
+
+	// ticks done, only touched under the wheel's lock
+	private long tick;
+	private Thread thread;
+	private volatile boolean closed;
+
+	public TimingWheel(long tickDuration, TimeUnit unit, int ticksPerWheel) {
+		this(tickDuration, unit, ticksPerWheel, TimeSource.SYSTEM);
+	}
+
+	public TimingWheel(long tickDuration, TimeUnit unit, int ticksPerWheel, TimeSource time) {
+		if (tickDuration <= 0 || ticksPerWheel <= 0 || ticksPerWheel > 1 << 30) {
+			throw new IllegalArgumentException("Invalid timing wheel: " + ticksPerWheel + " ticks of " + tickDuration + " " + unit);
+		}
+		this.time = time;
+		this.tickNanos = unit.toNanos(tickDuration);
+		int size = Integer.highestOneBit(ticksPerWheel - 1) << 1;
+		wheel = new Bucket[Math.max(size, 1)];
+		for (int i = 0; i < wheel.length; i++) {
+			wheel[i] = new Bucket();
+		}
+		mask = wheel.length - 1;
+		startTime = time.nanoTime();
+	}
+
+	public synchronized void start() {
+		if (closed) {
+			throw new IllegalStateException("The timing wheel is closed");
+		}
+		if (thread != null) {
+			return;
+		}
+		thread = new Thread(this::run, "timing-wheel");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+		if (closed) {
+			throw new IllegalStateException("The timing wheel is closed");
+		}
+		long elapsed = time.nanoTime() - startTime;
+		long nanos = unit.toNanos(Math.max(delay, 0));
+		// a deadline past the end of time is as good as never
+		long deadline = (elapsed + nanos < 0) ? Long.MAX_VALUE : elapsed + nanos;
+		Timeout timeout = new Timeout(this, task, deadline);
+		pending.incrementAndGet();
+		scheduled.add(timeout);
+		return timeout;
+	}
+
+	// Timeouts neither fired nor cancelled.
+	public int pending() {
+		return pending.get();
+	}
+
+	public long getTickNanos() {
+		return tickNanos;
+	}
+
+	// Runs the ticks that have ended by now and returns the number of tasks fired.
+	public synchronized int advance() {
+		long elapsed = time.nanoTime() - startTime;
+		int fired = 0;
+		while ((tick + 1) * tickNanos <= elapsed) {
+			removeCancelled();
+			addScheduled();
+			fired += wheel[(int)(tick & mask)].expire();
+			tick++;
+		}
+		return fired;
+	}
+
+	private void addScheduled() {
+		Timeout timeout;
+		while ((timeout = scheduled.poll()) != null) {
+			if (timeout.state.get() != WAITING) {
+				continue;
+			}
+			// deadline in (t * tickNanos, (t + 1) * tickNanos] is due at the end of tick t
+			long due = Math.max((timeout.deadline - 1) / tickNanos, tick);
+			timeout.rounds = (due - tick) / wheel.length;
+			wheel[(int)(due & mask)].add(timeout);
+		}
+	}
+
+	private void removeCancelled() {
+		Timeout timeout;
+		while ((timeout = cancelled.poll()) != null) {
+			if (timeout.bucket != null) {
+				timeout.bucket.remove(timeout);
+			}
+		}
+	}
+
+	private void run() {
+		while (!closed) {
+			long elapsed = time.nanoTime() - startTime;
+			long next;
+			synchronized (this) {
+				next = (tick + 1) * tickNanos;
+			}
+			if (elapsed < next) {
+				LockSupport.parkNanos(this, next - elapsed);
+				continue;
+			}
+			advance();
+		}
+	}
+
+	// Stops the wheel thread; timeouts still pending never fire.
+	@Override
+	public void close() {
+		Thread t;
+		synchronized (this) {
+			closed = true;
+			t = thread;
+		}
+		if (t != null && t != Thread.currentThread()) {
+			LockSupport.unpark(t);
+			try {
+				t.join();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private void fire(Timeout timeout) {
+		try {
+			timeout.task.run();
+		}
+		catch (RuntimeException | Error e) {
+			// reported like an uncaught exception, but the wheel keeps going for the other timeouts
+			Thread current = Thread.currentThread();
+			current.getUncaughtExceptionHandler().uncaughtException(current, e);
+		}
+	}
+
+	public static final class Timeout {
+
+		private final TimingWheel wheel;
+		private final Runnable task;
+		// nanoseconds from the start of the wheel
+		private final long deadline;
+		private final AtomicInteger state = new AtomicInteger(WAITING);
+
+		// bucket links and remaining turns of the wheel, owned by the wheel
+		private Bucket bucket;
+		private Timeout previous;
+		private Timeout next;
+		private long rounds;
+
+		private Timeout(TimingWheel wheel, Runnable task, long deadline) {
+			this.wheel = wheel;
+			this.task = task;
+			this.deadline = deadline;
+		}
+
+		// False if the task has already fired or was cancelled before.
+		public boolean cancel() {
+			if (!state.compareAndSet(WAITING, CANCELLED)) {
+				return false;
+			}
+			wheel.pending.decrementAndGet();
+			wheel.cancelled.add(this);
+			return true;
+		}
+
+		public boolean isCancelled() {
+			return state.get() == CANCELLED;
+		}
+
+		public boolean isExpired() {
+			return state.get() == EXPIRED;
+		}
+	}
+
+	private final class Bucket {
+
+		private Timeout head;
+		private Timeout tail;
+
+		void add(Timeout timeout) {
+			timeout.bucket = this;
+			timeout.previous = tail;
+			if (tail == null) {
+				head = timeout;
+			}
+			else {
+				tail.next = timeout;
+			}
+			tail = timeout;
+		}
+
+		void remove(Timeout timeout) {
+			if (timeout.previous == null) {
+				head = timeout.next;
+			}
+			else {
+				timeout.previous.next = timeout.next;
+			}
+			if (timeout.next == null) {
+				tail = timeout.previous;
+			}
+			else {
+				timeout.next.previous = timeout.previous;
+			}
+			timeout.bucket = null;
+			timeout.previous = null;
+			timeout.next = null;
+		}
+
+		int expire() {
+			int fired = 0;
+			Timeout timeout = head;
+			while (timeout != null) {
+				Timeout next = timeout.next;
+				if (timeout.rounds > 0) {
+					timeout.rounds--;
+				}
+				else {
+					remove(timeout);
+					if (timeout.state.compareAndSet(WAITING, EXPIRED)) {
+						pending.decrementAndGet();
+						fire(timeout);
+						fired++;
+					}
+				}
+				timeout = next;
+			}
+			return fired;
+		}
+	}
+}
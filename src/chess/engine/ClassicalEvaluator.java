@@ -0,0 +1,82 @@
+package chess.engine;
+
+import java.util.List;
+
+import boardgame.Piece;
+import chess.ChessMatch;
+import chess.ChessPiece;
+import chess.Color;
+
+// Tapered material and piece-square evaluation, read in O(1) from the sums ChessMatch keeps up to date,
+// plus pawn structure through a pawn hash table and an optional mobility term that walks the pieces.
+// An instance is meant to be used by one thread at a time.
+public class ClassicalEvaluator implements Evaluator {
+
+	private static final int MAX_PHASE = 24;
+
+	// per piece type: pawn, knight, bishop, rook, queen, king
+	private static final int[] MIDDLEGAME_MOBILITY = { 0, 4, 5, 2, 1, 0 };
+	private static final int[] ENDGAME_MOBILITY = { 0, 4, 5, 4, 2, 0 };
+
+	private static final int DEFAULT_PAWN_HASH_ENTRIES = 1 << 14;
+
+	private final boolean mobility;
+	private final PawnHashTable pawnTable;
+	private final int[] pawnScores = new int[2];
+
+	public ClassicalEvaluator() {
+		this(true);
+	}
+
+	public ClassicalEvaluator(boolean mobility) {
+		this(mobility, new PawnHashTable(DEFAULT_PAWN_HASH_ENTRIES));
+	}
+
+	// A null table leaves the pawn-structure terms out.
+	public ClassicalEvaluator(boolean mobility, PawnHashTable pawnTable) {
+		this.mobility = mobility;
+		this.pawnTable = pawnTable;
+	}
+
+	public boolean isMobility() {
+		return mobility;
+	}
+
+	public PawnHashTable getPawnTable() {
+		return pawnTable;
+	}
+
+	@Override
+	public int evaluate(ChessMatch match) {
+		int mg = match.getMiddlegameScore();
+		int eg = match.getEndgameScore();
+		if (pawnTable != null) {
+			pawnScores[0] = 0;
+			pawnScores[1] = 0;
+			PawnStructure.evaluate(match, pawnTable, pawnScores);
+			mg += pawnScores[0];
+			eg += pawnScores[1];
+		}
+		if (mobility) {
+			List<Piece> pieces = match.getPiecesOnTheBoard();
+			for (int i = 0; i < pieces.size(); i++) {
+				ChessPiece p = (ChessPiece)pieces.get(i);
+				int t = p.getType().ordinal();
+				if (MIDDLEGAME_MOBILITY[t] != 0) {
+					int squares = (p.getColor() == Color.WHITE) ? p.mobility() : -p.mobility();
+					mg += MIDDLEGAME_MOBILITY[t] * squares;
+					eg += ENDGAME_MOBILITY[t] * squares;
+				}
+			}
+		}
+		int score = taper(mg, eg, match.getGamePhase());
+		return (match.getCurrentPlayer() == Color.WHITE) ? score : -score;
+	}
+
+	static int taper(int mg, int eg, int phase) {
+		if (phase > MAX_PHASE) {
+			phase = MAX_PHASE;
+		}
+		return (mg * phase + eg * (MAX_PHASE - phase)) / MAX_PHASE;
+	}
+}
@@ -0,0 +1,9 @@
+package chess.engine;
+
+import chess.ChessMatch;
+
+public interface Evaluator {
+
+	// Static score of the position in centipawns, from the point of view of the side to move.
+	int evaluate(ChessMatch match);
+}
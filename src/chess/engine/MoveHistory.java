@@ -0,0 +1,101 @@
+package chess.engine;
+
+import java.util.Arrays;
+
+import chess.ChessPiece;
+import chess.Move;
+
+// Quiet-move ordering statistics gathered from beta cutoffs: two killer moves per ply, a butterfly
+// history per color and from/to, the counter move to each previous move, and continuation history
+// by (previous piece and target, piece and target). Pieces are indexed color * 6 + type.
+final class MoveHistory {
+
+	static final int NO_PIECE = -1;
+
+	private static final int MAX_HISTORY = 16384;
+
+	private final int[][] killers = new int[Search.MAX_PLY][2];
+	private final int[] butterfly = new int[2 * 64 * 64];
+	private final int[] counterMoves = new int[12 * 64];
+	private final short[] continuation = new short[12 * 64 * 12 * 64];
+
+	static int pieceIndex(ChessPiece piece) {
+		return piece.getColor().ordinal() * 6 + piece.getType().ordinal();
+	}
+
+	// Piece and target of a move as one index, or NO_PIECE.
+	static int pieceTo(int pieceIndex, int move) {
+		return (pieceIndex == NO_PIECE) ? NO_PIECE : pieceIndex * 64 + Move.to(move);
+	}
+
+	int killer(int ply, int i) {
+		return killers[ply][i];
+	}
+
+	int counterMove(int previousPieceTo) {
+		return (previousPieceTo == NO_PIECE) ? Move.NONE : counterMoves[previousPieceTo];
+	}
+
+	// Ordering score of a quiet move given the piece-to indexes of the last two moves.
+	int score(int color, int move, int pieceTo, int previous, int previous2) {
+		int score = butterfly[color * 4096 + (move & 0xFFF)];
+		if (previous != NO_PIECE) {
+			score += continuation[previous * 768 + pieceTo];
+		}
+		if (previous2 != NO_PIECE) {
+			score += continuation[previous2 * 768 + pieceTo];
+		}
+		return score;
+	}
+
+	// The quiet move caused a cutoff: reward it and penalize the quiet moves searched before it.
+	void update(int ply, int depth, int color, int move, int pieceTo, int previous, int previous2,
+			int[] triedMoves, int[] triedPieceTo, int tried) {
+		if (killers[ply][0] != move) {
+			killers[ply][1] = killers[ply][0];
+			killers[ply][0] = move;
+		}
+		if (previous != NO_PIECE) {
+			counterMoves[previous] = move;
+		}
+		int bonus = Math.min(depth * depth, 400);
+		reward(color, move, pieceTo, previous, previous2, bonus);
+		for (int i = 0; i < tried; i++) {
+			if (triedMoves[i] != move) {
+				reward(color, triedMoves[i], triedPieceTo[i], previous, previous2, -bonus);
+			}
+		}
+	}
+
+	private void reward(int color, int move, int pieceTo, int previous, int previous2, int bonus) {
+		int i = color * 4096 + (move & 0xFFF);
+		butterfly[i] = gravity(butterfly[i], bonus);
+		if (previous != NO_PIECE) {
+			int j = previous * 768 + pieceTo;
+			continuation[j] = (short)gravity(continuation[j], bonus);
+		}
+		if (previous2 != NO_PIECE) {
+			int j = previous2 * 768 + pieceTo;
+			continuation[j] = (short)gravity(continuation[j], bonus);
+		}
+	}
+
+	// Moves the value towards the bonus, staying within +-MAX_HISTORY however often it is applied.
+	private static int gravity(int value, int bonus) {
+		return value + bonus * 32 - value * Math.abs(bonus) / (MAX_HISTORY / 32);
+	}
+
+	void clearKillers() {
+		for (int[] k : killers) {
+			k[0] = Move.NONE;
+			k[1] = Move.NONE;
+		}
+	}
+
+	void clear() {
+		clearKillers();
+		Arrays.fill(butterfly, 0);
+		Arrays.fill(counterMoves, Move.NONE);
+		Arrays.fill(continuation, (short)0);
+	}
+}
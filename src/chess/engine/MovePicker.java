@@ -0,0 +1,239 @@
+package chess.engine;
+
+import chess.ChessMatch;
+import chess.ChessPiece;
+import chess.Move;
+import chess.MoveList;
+
+// Hands out the moves of one node best-first, generating them in stages so that a cutoff early on
+// never pays for the later ones: the hash move, captures with a non-losing exchange by MVV-LVA,
+// the killers and the counter move, quiet moves by history, and the losing captures last.
+// In check all evasions are generated at once. In quiescence mode only captures and promotions
+// are returned, and no losing ones.
+final class MovePicker {
+
+	private static final int HASH_MOVE = 0;
+	private static final int GENERATE_CAPTURES = 1;
+	private static final int GOOD_CAPTURES = 2;
+	private static final int KILLER_1 = 3;
+	private static final int KILLER_2 = 4;
+	private static final int COUNTER_MOVE = 5;
+	private static final int GENERATE_QUIETS = 6;
+	private static final int QUIETS = 7;
+	private static final int BAD_CAPTURES = 8;
+	private static final int GENERATE_EVASIONS = 9;
+	private static final int EVASIONS = 10;
+	private static final int DONE = 11;
+
+	private ChessMatch match;
+	private final StaticExchange exchange;
+	private final MoveHistory history;
+	private final MoveList moves = new MoveList();
+	private final MoveList badCaptures = new MoveList(32);
+	private int[] keys = new int[256];
+
+	private int stage;
+	private int index;
+	private boolean quiescence;
+	private int hashMove;
+	private int killer1;
+	private int killer2;
+	private int counterMove;
+	private int color;
+	private int previous;
+	private int previous2;
+	private boolean generatedQuiets;
+
+	MovePicker(ChessMatch match, StaticExchange exchange, MoveHistory history) {
+		this.match = match;
+		this.exchange = exchange;
+		this.history = history;
+	}
+
+	// Pickers outlive the matches they serve: a search moving to another match rebinds its pickers.
+	void setMatch(ChessMatch match) {
+		this.match = match;
+	}
+
+	void init(int hashMove, int ply, boolean quiescence, int previous, int previous2) {
+		this.hashMove = hashMove;
+		this.quiescence = quiescence;
+		this.previous = previous;
+		this.previous2 = previous2;
+		color = match.getCurrentPlayer().ordinal();
+		killer1 = quiescence ? Move.NONE : history.killer(ply, 0);
+		killer2 = quiescence ? Move.NONE : history.killer(ply, 1);
+		counterMove = quiescence ? Move.NONE : history.counterMove(previous);
+		badCaptures.clear();
+		generatedQuiets = false;
+		stage = HASH_MOVE;
+	}
+
+	// Whether this node had to generate its quiet moves.
+	boolean generatedQuiets() {
+		return generatedQuiets;
+	}
+
+	// Next move to try, or Move.NONE when there is none left. Moves are pseudo-legal.
+	int next() {
+		switch (stage) {
+		case HASH_MOVE:
+			stage = match.getCheck() ? GENERATE_EVASIONS : GENERATE_CAPTURES;
+			if (hashMove != Move.NONE && (!quiescence || isNoisy(hashMove) || match.getCheck()) && match.isPseudoLegal(hashMove)) {
+				return hashMove;
+			}
+			return next();
+		case GENERATE_CAPTURES:
+			moves.clear();
+			match.generateMoves(moves, ChessPiece.NOISY_MOVES);
+			scoreCaptures(0);
+			index = 0;
+			stage = GOOD_CAPTURES;
+			return next();
+		case GOOD_CAPTURES:
+			while (index < moves.size()) {
+				int move = pickBest(index++);
+				if (move == hashMove) {
+					continue;
+				}
+				// only captures of a cheaper piece can lose material, so only they need the exchange
+				if (keys[index - 1] < 0 && exchange.see(match, move) < 0) {
+					badCaptures.add(move);
+					continue;
+				}
+				return move;
+			}
+			stage = quiescence ? DONE : KILLER_1;
+			return next();
+		case KILLER_1:
+			stage = KILLER_2;
+			if (isFreshQuiet(killer1)) {
+				return killer1;
+			}
+			return next();
+		case KILLER_2:
+			stage = COUNTER_MOVE;
+			if (killer2 != killer1 && isFreshQuiet(killer2)) {
+				return killer2;
+			}
+			return next();
+		case COUNTER_MOVE:
+			stage = GENERATE_QUIETS;
+			if (counterMove != killer1 && counterMove != killer2 && isFreshQuiet(counterMove)) {
+				return counterMove;
+			}
+			return next();
+		case GENERATE_QUIETS:
+			moves.clear();
+			match.generateMoves(moves, ChessPiece.QUIET_MOVES);
+			generatedQuiets = true;
+			scoreQuiets(0);
+			index = 0;
+			stage = QUIETS;
+			return next();
+		case QUIETS:
+			while (index < moves.size()) {
+				int move = pickBest(index++);
+				if (move != hashMove && move != killer1 && move != killer2 && move != counterMove) {
+					return move;
+				}
+			}
+			index = 0;
+			stage = BAD_CAPTURES;
+			return next();
+		case BAD_CAPTURES:
+			if (index < badCaptures.size()) {
+				return badCaptures.get(index++);
+			}
+			stage = DONE;
+			return Move.NONE;
+		case GENERATE_EVASIONS:
+			moves.clear();
+			match.generateMoves(moves);
+			scoreCaptures(0);
+			for (int i = 0; i < moves.size(); i++) {
+				if (!isNoisy(moves.get(i))) {
+					keys[i] = history.score(color, moves.get(i), pieceTo(moves.get(i)), previous, previous2) - 1_000_000;
+				}
+				else {
+					keys[i] += 1_000_000;
+				}
+			}
+			index = 0;
+			stage = EVASIONS;
+			return next();
+		case EVASIONS:
+			while (index < moves.size()) {
+				int move = pickBest(index++);
+				if (move != hashMove) {
+					return move;
+				}
+			}
+			stage = DONE;
+			return Move.NONE;
+		default:
+			return Move.NONE;
+		}
+	}
+
+	private boolean isFreshQuiet(int move) {
+		return move != Move.NONE && move != hashMove && !isNoisy(move) && match.isPseudoLegal(move);
+	}
+
+	private static boolean isNoisy(int move) {
+		return Move.isCapture(move) || Move.isPromotion(move);
+	}
+
+	private int pieceTo(int move) {
+		return MoveHistory.pieceTo(MoveHistory.pieceIndex(match.pieceAt(Move.from(move))), move);
+	}
+
+	// MVV-LVA: victim value first, cheaper attacker second. The key is negative when the attacker
+	// is worth more than the victim, the only case where the exchange needs checking.
+	private void scoreCaptures(int from) {
+		ensureKeys();
+		for (int i = from; i < moves.size(); i++) {
+			int move = moves.get(i);
+			int attacker = StaticExchange.VALUES[match.pieceAt(Move.from(move)).getType().ordinal()];
+			ChessPiece target = match.pieceAt(Move.to(move));
+			int victim = (target != null) ? StaticExchange.VALUES[target.getType().ordinal()]
+					: Move.isEnPassant(move) ? StaticExchange.VALUES[0] : 0;
+			if (Move.isPromotion(move)) {
+				victim += StaticExchange.VALUES[Move.promotion(move).ordinal()];
+			}
+			int key = victim * 8 - attacker / 100;
+			keys[i] = (attacker > victim) ? key - 100_000 : key;
+		}
+	}
+
+	private void scoreQuiets(int from) {
+		ensureKeys();
+		for (int i = from; i < moves.size(); i++) {
+			keys[i] = history.score(color, moves.get(i), pieceTo(moves.get(i)), previous, previous2);
+		}
+	}
+
+	private void ensureKeys() {
+		if (keys.length < moves.size()) {
+			keys = new int[moves.size() * 2];
+		}
+	}
+
+	private int pickBest(int i) {
+		int best = i;
+		for (int j = i + 1; j < moves.size(); j++) {
+			if (keys[j] > keys[best]) {
+				best = j;
+			}
+		}
+		if (best != i) {
+			int move = moves.get(best);
+			moves.set(best, moves.get(i));
+			moves.set(i, move);
+			int key = keys[best];
+			keys[best] = keys[i];
+			keys[i] = key;
+		}
+		return moves.get(i);
+	}
+}
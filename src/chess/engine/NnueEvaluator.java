@@ -0,0 +1,102 @@
+package chess.engine;
+
+import java.util.List;
+
+import boardgame.Piece;
+import chess.BoardObserver;
+import chess.ChessMatch;
+import chess.ChessPiece;
+import chess.Color;
+
+// Evaluates with an NnueNetwork. While attached to a match it observes the board and adds or
+// subtracts one weight column per piece change, so evaluate() only runs the output layer.
+// The loops are NnueKernels: Vector API code when jdk.incubator.vector is loaded, scalar otherwise.
+// One evaluator follows one match at a time; evaluating another match attaches to it.
+public class NnueEvaluator implements Evaluator, BoardObserver {
+
+	private static final NnueKernels KERNELS = NnueKernels.INSTANCE;
+
+	private final NnueNetwork network;
+	private final int hidden;
+	private final short[] whiteAccumulator;
+	private final short[] blackAccumulator;
+	private ChessMatch match;
+
+	public NnueEvaluator(NnueNetwork network) {
+		this.network = network;
+		hidden = network.getHidden();
+		whiteAccumulator = new short[hidden];
+		blackAccumulator = new short[hidden];
+	}
+
+	public NnueNetwork getNetwork() {
+		return network;
+	}
+
+	// Follows the given match from now on, rebuilding the accumulators from its pieces.
+	public void attach(ChessMatch match) {
+		if (this.match != null && this.match.getBoardObserver() == this) {
+			this.match.setBoardObserver(null);
+		}
+		this.match = match;
+		match.setBoardObserver(this);
+		refresh();
+	}
+
+	public void detach() {
+		if (match != null && match.getBoardObserver() == this) {
+			match.setBoardObserver(null);
+		}
+		match = null;
+	}
+
+	private void refresh() {
+		System.arraycopy(network.featureBias, 0, whiteAccumulator, 0, hidden);
+		System.arraycopy(network.featureBias, 0, blackAccumulator, 0, hidden);
+		List<Piece> pieces = match.getPiecesOnTheBoard();
+		for (int i = 0; i < pieces.size(); i++) {
+			ChessPiece p = (ChessPiece)pieces.get(i);
+			pieceAdded(p, p.getChessPosition().getSquare());
+		}
+	}
+
+	@Override
+	public void pieceAdded(ChessPiece piece, int square) {
+		add(whiteAccumulator, feature(piece, square, Color.WHITE));
+		add(blackAccumulator, feature(piece, square, Color.BLACK));
+	}
+
+	@Override
+	public void pieceRemoved(ChessPiece piece, int square) {
+		subtract(whiteAccumulator, feature(piece, square, Color.WHITE));
+		subtract(blackAccumulator, feature(piece, square, Color.BLACK));
+	}
+
+	// Black sees the board mirrored vertically with the colours swapped, so both sides share the weights.
+	private static int feature(ChessPiece piece, int square, Color perspective) {
+		int side = (piece.getColor() == perspective) ? 0 : 384;
+		int sq = (perspective == Color.WHITE) ? square : square ^ 56;
+		return side + piece.getType().ordinal() * 64 + sq;
+	}
+
+	private void add(short[] accumulator, int feature) {
+		KERNELS.add(accumulator, network.featureWeights, feature * hidden, hidden);
+	}
+
+	private void subtract(short[] accumulator, int feature) {
+		KERNELS.subtract(accumulator, network.featureWeights, feature * hidden, hidden);
+	}
+
+	@Override
+	public int evaluate(ChessMatch match) {
+		if (match != this.match || match.getBoardObserver() != this) {
+			attach(match);
+		}
+		boolean white = match.getCurrentPlayer() == Color.WHITE;
+		short[] weights = network.outputWeights;
+		int sum = KERNELS.layer(white ? whiteAccumulator : blackAccumulator, weights, 0, hidden)
+				+ KERNELS.layer(white ? blackAccumulator : whiteAccumulator, weights, hidden, hidden);
+		long score = (long)(sum + network.outputBias) * NnueNetwork.OUTPUT_SCALE;
+		return (int)(score / (NnueNetwork.ACTIVATION_SCALE * NnueNetwork.WEIGHT_SCALE));
+	}
+}
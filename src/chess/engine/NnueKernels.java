@@ -0,0 +1,45 @@
+package chess.engine;
+
+// The loops of NnueEvaluator: accumulator updates and the output layer. These are the scalar
+// versions, plain int16 arithmetic that C2 may still vectorize; VectorNnueKernels overrides them
+// with the incubating Vector API and is picked when the JVM runs with
+// --add-modules jdk.incubator.vector. Compiling the tree needs the same flag.
+class NnueKernels {
+
+	static final NnueKernels INSTANCE = select();
+
+	private static NnueKernels select() {
+		if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+			try {
+				return (NnueKernels)Class.forName("chess.engine.VectorNnueKernels").getDeclaredConstructor().newInstance();
+			}
+			catch (ReflectiveOperationException | LinkageError e) {
+				// keep the scalar loops
+			}
+		}
+		return new NnueKernels();
+	}
+
+	// accumulator[i] += weights[offset + i] for i < length, wrapping like short arithmetic
+	void add(short[] accumulator, short[] weights, int offset, int length) {
+		for (int i = 0; i < length; i++) {
+			accumulator[i] += weights[offset + i];
+		}
+	}
+
+	void subtract(short[] accumulator, short[] weights, int offset, int length) {
+		for (int i = 0; i < length; i++) {
+			accumulator[i] -= weights[offset + i];
+		}
+	}
+
+	// Clipped ReLU followed by a dot product with weights[offset, offset + length).
+	int layer(short[] accumulator, short[] weights, int offset, int length) {
+		int sum = 0;
+		for (int i = 0; i < length; i++) {
+			int v = Math.min(Math.max(accumulator[i], 0), NnueNetwork.ACTIVATION_SCALE);
+			sum += v * weights[offset + i];
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,111 @@
+package chess.engine;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Quantized 768 -> hidden x2 -> 1 network. The 768 inputs are (own/their piece, type, square) seen
+// from one side; each side has its own accumulator of hidden int16 values and the output layer
+// reads the side to move's accumulator first.
+//
+// File layout, big-endian: int magic "NNUE", int version, int hidden size, then the hidden biases
+// (short[hidden]), the feature weights (short[768 * hidden], feature-major), the output weights
+// (short[2 * hidden]) and the output bias (int).
+public final class NnueNetwork {
+
+	public static final int INPUTS = 768;
+
+	// activations are clipped to [0, ACTIVATION_SCALE]; output weights carry WEIGHT_SCALE
+	public static final int ACTIVATION_SCALE = 255;
+	public static final int WEIGHT_SCALE = 64;
+	public static final int OUTPUT_SCALE = 400;
+
+	private static final int MAGIC = 0x4E4E5545;
+	private static final int VERSION = 1;
+
+	private final int hidden;
+	final short[] featureBias;
+	final short[] featureWeights;
+	final short[] outputWeights;
+	final int outputBias;
+
+	public NnueNetwork(int hidden, short[] featureBias, short[] featureWeights, short[] outputWeights, int outputBias) {
+		if (hidden < 1 || featureBias.length != hidden || featureWeights.length != INPUTS * hidden
+				|| outputWeights.length != 2 * hidden) {
+			throw new IllegalArgumentException("Inconsistent network dimensions");
+		}
+		this.hidden = hidden;
+		this.featureBias = featureBias;
+		this.featureWeights = featureWeights;
+		this.outputWeights = outputWeights;
+		this.outputBias = outputBias;
+	}
+
+	public int getHidden() {
+		return hidden;
+	}
+
+	public static NnueNetwork load(Path path) throws IOException {
+		try (InputStream in = Files.newInputStream(path)) {
+			return read(in);
+		}
+	}
+
+	public static NnueNetwork read(InputStream stream) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+		if (in.readInt() != MAGIC) {
+			throw new IOException("Not a network file");
+		}
+		int version = in.readInt();
+		if (version != VERSION) {
+			throw new IOException("Unsupported network version " + version);
+		}
+		int hidden = in.readInt();
+		if (hidden < 1 || hidden > 1 << 16) {
+			throw new IOException("Invalid hidden layer size " + hidden);
+		}
+		short[] featureBias = readShorts(in, hidden);
+		short[] featureWeights = readShorts(in, INPUTS * hidden);
+		short[] outputWeights = readShorts(in, 2 * hidden);
+		int outputBias = in.readInt();
+		return new NnueNetwork(hidden, featureBias, featureWeights, outputWeights, outputBias);
+	}
+
+	public void save(Path path) throws IOException {
+		try (OutputStream out = Files.newOutputStream(path)) {
+			write(out);
+		}
+	}
+
+	public void write(OutputStream stream) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(hidden);
+		writeShorts(out, featureBias);
+		writeShorts(out, featureWeights);
+		writeShorts(out, outputWeights);
+		out.writeInt(outputBias);
+		out.flush();
+	}
+
+	private static short[] readShorts(DataInputStream in, int n) throws IOException {
+		short[] values = new short[n];
+		for (int i = 0; i < n; i++) {
+			values[i] = in.readShort();
+		}
+		return values;
+	}
+
+	private static void writeShorts(DataOutputStream out, short[] values) throws IOException {
+		for (short v : values) {
+			out.writeShort(v);
+		}
+	}
+}
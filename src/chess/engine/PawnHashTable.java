@@ -0,0 +1,101 @@
+package chess.engine;
+
+import java.util.Arrays;
+
+// Fixed-size, always-replace cache of pawn-structure results keyed by ChessMatch.getPawnKey().
+// Entries live in parallel arrays, so probing allocates nothing. Not thread-safe: each search
+// thread owns its evaluator and with it its own table.
+public final class PawnHashTable {
+
+	private final long[] keys;
+	private final int[] middlegame;
+	private final int[] endgame;
+	private final long[] whitePawns;
+	private final long[] blackPawns;
+	private final int mask;
+
+	private long probes;
+	private long hits;
+
+	public PawnHashTable(int entries) {
+		if (entries < 1) {
+			throw new IllegalArgumentException("The pawn hash table needs at least one entry");
+		}
+		int size = Integer.highestOneBit(entries);
+		keys = new long[size];
+		middlegame = new int[size];
+		endgame = new int[size];
+		whitePawns = new long[size];
+		blackPawns = new long[size];
+		mask = size - 1;
+	}
+
+	public int size() {
+		return keys.length;
+	}
+
+	// Slot of the key; whether it holds this key is answered by probe().
+	int slot(long key) {
+		return (int)(key ^ (key >>> 32)) & mask;
+	}
+
+	boolean probe(int slot, long key) {
+		probes++;
+		if (keys[slot] == key) {
+			hits++;
+			return true;
+		}
+		return false;
+	}
+
+	void store(int slot, long key, int mg, int eg, long white, long black) {
+		keys[slot] = key;
+		middlegame[slot] = mg;
+		endgame[slot] = eg;
+		whitePawns[slot] = white;
+		blackPawns[slot] = black;
+	}
+
+	int middlegame(int slot) {
+		return middlegame[slot];
+	}
+
+	int endgame(int slot) {
+		return endgame[slot];
+	}
+
+	long whitePawns(int slot) {
+		return whitePawns[slot];
+	}
+
+	long blackPawns(int slot) {
+		return blackPawns[slot];
+	}
+
+	public long getProbes() {
+		return probes;
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	public double getHitRate() {
+		return (probes == 0) ? 0 : (double)hits / probes;
+	}
+
+	public void clear() {
+		Arrays.fill(keys, 0);
+		Arrays.fill(middlegame, 0);
+		Arrays.fill(endgame, 0);
+		Arrays.fill(whitePawns, 0);
+		Arrays.fill(blackPawns, 0);
+		probes = 0;
+		hits = 0;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("pawn hash: %d entries, %d probes, %.1f%% hits", keys.length, probes, 100 * getHitRate());
+	}
+}
@@ -0,0 +1,159 @@
+package chess.engine;
+
+import java.util.List;
+
+import boardgame.Piece;
+import chess.ChessMatch;
+import chess.ChessPiece;
+import chess.Color;
+import chess.PieceType;
+
+// Pawn-structure terms on 64-bit pawn sets (bit = ChessPosition.getSquare(), a8 = 0, so White
+// advances towards lower squares). Doubled, isolated, backward and passed pawns depend on the pawns
+// only and are cached in a PawnHashTable; the king shield also needs the kings and is added per call.
+final class PawnStructure {
+
+	private static final long FILE_A = 0x0101010101010101L;
+	private static final long FILE_H = FILE_A << 7;
+
+	private static final int DOUBLED_MG = -10;
+	private static final int DOUBLED_EG = -20;
+	private static final int ISOLATED_MG = -10;
+	private static final int ISOLATED_EG = -15;
+	private static final int BACKWARD_MG = -8;
+	private static final int BACKWARD_EG = -10;
+	// by rank counted from the pawn's own side, 0 = first rank
+	private static final int[] PASSED_MG = { 0, 5, 10, 15, 25, 40, 60, 0 };
+	private static final int[] PASSED_EG = { 0, 10, 20, 35, 60, 100, 150, 0 };
+	private static final int SHIELD_NEAR_MG = 10;
+	private static final int SHIELD_FAR_MG = 5;
+
+	private static final long[] FILES = new long[8];
+	private static final long[] ADJACENT_FILES = new long[8];
+	private static final long[] ROWS = new long[8];
+	// [color][square]: squares in front on the same and adjacent files, and own-side squares on adjacent files
+	private static final long[][] PASSED_MASK = new long[2][64];
+	private static final long[][] SUPPORT_MASK = new long[2][64];
+
+	private static final int WHITE = Color.WHITE.ordinal();
+	private static final int BLACK = Color.BLACK.ordinal();
+
+	static {
+		for (int i = 0; i < 8; i++) {
+			FILES[i] = FILE_A << i;
+			ROWS[i] = 0xFFL << (8 * i);
+		}
+		for (int f = 0; f < 8; f++) {
+			ADJACENT_FILES[f] = ((f > 0) ? FILES[f - 1] : 0) | ((f < 7) ? FILES[f + 1] : 0);
+		}
+		for (int sq = 0; sq < 64; sq++) {
+			int row = sq / 8;
+			int file = sq % 8;
+			long span = FILES[file] | ADJACENT_FILES[file];
+			for (int r = 0; r < 8; r++) {
+				if (r < row) {
+					PASSED_MASK[WHITE][sq] |= span & ROWS[r];
+					SUPPORT_MASK[BLACK][sq] |= ADJACENT_FILES[file] & ROWS[r];
+				}
+				if (r > row) {
+					PASSED_MASK[BLACK][sq] |= span & ROWS[r];
+					SUPPORT_MASK[WHITE][sq] |= ADJACENT_FILES[file] & ROWS[r];
+				}
+				if (r == row) {
+					SUPPORT_MASK[WHITE][sq] |= ADJACENT_FILES[file] & ROWS[r];
+					SUPPORT_MASK[BLACK][sq] |= ADJACENT_FILES[file] & ROWS[r];
+				}
+			}
+		}
+	}
+
+	private PawnStructure() {
+	}
+
+	// Adds the pawn terms (White minus Black) to scores[0] (middlegame) and scores[1] (endgame).
+	static void evaluate(ChessMatch match, PawnHashTable table, int[] scores) {
+		long key = match.getPawnKey();
+		int slot = table.slot(key);
+		if (!table.probe(slot, key)) {
+			long white = 0;
+			long black = 0;
+			List<Piece> pieces = match.getPiecesOnTheBoard();
+			for (int i = 0; i < pieces.size(); i++) {
+				ChessPiece p = (ChessPiece)pieces.get(i);
+				if (p.getType() == PieceType.PAWN) {
+					long bit = 1L << p.getChessPosition().getSquare();
+					if (p.getColor() == Color.WHITE) {
+						white |= bit;
+					}
+					else {
+						black |= bit;
+					}
+				}
+			}
+			long whiteAttacks = ((white >>> 7) & ~FILE_A) | ((white >>> 9) & ~FILE_H);
+			long blackAttacks = ((black << 7) & ~FILE_H) | ((black << 9) & ~FILE_A);
+			long whiteTerms = side(white, black, blackAttacks, WHITE);
+			long blackTerms = side(black, white, whiteAttacks, BLACK);
+			int mg = (int)(whiteTerms >> 32) - (int)(blackTerms >> 32);
+			int eg = (int)whiteTerms - (int)blackTerms;
+			table.store(slot, key, mg, eg, white, black);
+		}
+		scores[0] += table.middlegame(slot) + shield(table.whitePawns(slot), match.getKingSquare(Color.WHITE), -1)
+				- shield(table.blackPawns(slot), match.getKingSquare(Color.BLACK), 1);
+		scores[1] += table.endgame(slot);
+	}
+
+	// Middlegame score in the high half, endgame score in the low half.
+	private static long side(long own, long enemy, long enemyAttacks, int color) {
+		int mg = 0;
+		int eg = 0;
+		for (int f = 0; f < 8; f++) {
+			int count = Long.bitCount(own & FILES[f]);
+			if (count > 1) {
+				mg += DOUBLED_MG * (count - 1);
+				eg += DOUBLED_EG * (count - 1);
+			}
+		}
+		long pawns = own;
+		while (pawns != 0) {
+			int sq = Long.numberOfTrailingZeros(pawns);
+			pawns &= pawns - 1;
+			int file = sq % 8;
+			int rank = (color == WHITE) ? 7 - sq / 8 : sq / 8;
+			if ((own & ADJACENT_FILES[file]) == 0) {
+				mg += ISOLATED_MG;
+				eg += ISOLATED_EG;
+			}
+			else if ((own & SUPPORT_MASK[color][sq]) == 0) {
+				// no neighbour level or behind, and the stop square is covered by an enemy pawn
+				int stop = (color == WHITE) ? sq - 8 : sq + 8;
+				if (stop >= 0 && stop < 64 && (enemyAttacks & (1L << stop)) != 0) {
+					mg += BACKWARD_MG;
+					eg += BACKWARD_EG;
+				}
+			}
+			if ((enemy & PASSED_MASK[color][sq]) == 0) {
+				mg += PASSED_MG[rank];
+				eg += PASSED_EG[rank];
+			}
+		}
+		return ((long)mg << 32) | (eg & 0xFFFFFFFFL);
+	}
+
+	// Own pawns on the king's file and its neighbours, one and two rows in front of the king.
+	private static int shield(long pawns, int king, int forward) {
+		int row = king / 8;
+		int file = king % 8;
+		long span = FILES[file] | ADJACENT_FILES[file];
+		int score = 0;
+		int near = row + forward;
+		int far = row + 2 * forward;
+		if (near >= 0 && near < 8) {
+			score += SHIELD_NEAR_MG * Long.bitCount(pawns & span & ROWS[near]);
+		}
+		if (far >= 0 && far < 8) {
+			score += SHIELD_FAR_MG * Long.bitCount(pawns & span & ROWS[far]);
+		}
+		return score;
+	}
+}
@@ -0,0 +1,58 @@
+package chess.engine;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import chess.ChessMatch;
+import chess.Move;
+import chess.MoveList;
+
+// Counts the leaf nodes of the legal move tree, to check move generation against known totals.
+public final class Perft {
+
+	private Perft() {
+	}
+
+	public static long perft(ChessMatch match, int depth) {
+		MoveList[] lists = new MoveList[Math.max(depth, 1)];
+		for (int i = 0; i < lists.length; i++) {
+			lists[i] = new MoveList();
+		}
+		return perft(match, depth, lists);
+	}
+
+	// Leaf count below each root move, in generation order.
+	public static Map<String, Long> divide(ChessMatch match, int depth) {
+		Map<String, Long> counts = new LinkedHashMap<>();
+		MoveList root = new MoveList();
+		match.generateLegalMoves(root);
+		MoveList[] lists = new MoveList[Math.max(depth - 1, 1)];
+		for (int i = 0; i < lists.length; i++) {
+			lists[i] = new MoveList();
+		}
+		for (int i = 0; i < root.size(); i++) {
+			match.makeMove(root.get(i));
+			counts.put(Move.toString(root.get(i)), perft(match, depth - 1, lists));
+			match.undoMove();
+		}
+		return counts;
+	}
+
+	private static long perft(ChessMatch match, int depth, MoveList[] lists) {
+		if (depth == 0) {
+			return 1;
+		}
+		MoveList moves = lists[depth - 1];
+		moves.clear();
+		match.generateMoves(moves);
+		long nodes = 0;
+		for (int i = 0; i < moves.size(); i++) {
+			match.makeMove(moves.get(i));
+			if (match.isLastMoveLegal()) {
+				nodes += (depth == 1) ? 1 : perft(match, depth - 1, lists);
+			}
+			match.undoMove();
+		}
+		return nodes;
+	}
+}
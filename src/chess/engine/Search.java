@@ -0,0 +1,608 @@
+package chess.engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import chess.ChessMatch;
+import chess.ChessPiece;
+import chess.Color;
+import chess.Move;
+import chess.MoveList;
+import chess.PieceType;
+import chess.metrics.Metrics;
+import chess.metrics.SearchIterationEvent;
+
+// Iterative deepening principal variation search over a ChessMatch, which it plays moves on and
+// takes them back, ending in a quiescence search over captures and promotions. Moves come from a
+// staged MovePicker fed by the transposition table and the history heuristics. Null-move pruning,
+// late move reductions, futility pruning and aspiration windows can be switched in SearchOptions.
+// In multi-PV mode each iteration searches the root once per line, leaving out the moves of the
+// lines already found. A SearchListener sees every finished line while the search runs.
+// One instance per thread; the match must not be used elsewhere while a search runs.
+public class Search {
+
+	public static final int INFINITE = 32000;
+	public static final int MATE = 30000;
+	public static final int MAX_PLY = 128;
+
+	private static final int DEFAULT_HASH_MEGABYTES = 16;
+
+	// a capture that cannot lift the score this close to alpha is not worth searching
+	private static final int DELTA_MARGIN = 200;
+	private static final int ASPIRATION_WINDOW = 25;
+	private static final int REVERSE_FUTILITY_MARGIN = 120;
+	private static final int[] FUTILITY_MARGINS = { 0, 150, 300, 450 };
+	private static final int[][] REDUCTIONS = new int[64][64];
+
+	static {
+		for (int depth = 1; depth < 64; depth++) {
+			for (int index = 1; index < 64; index++) {
+				REDUCTIONS[depth][index] = (int)(0.75 + Math.log(depth) * Math.log(index) / 2.25);
+			}
+		}
+	}
+
+	private final Evaluator evaluator;
+	private final TranspositionTable table;
+	private SearchOptions options = new SearchOptions();
+	private final StaticExchange exchange = new StaticExchange();
+	private final MoveHistory history = new MoveHistory();
+	private final MovePicker[] pickers = new MovePicker[MAX_PLY];
+	private final MoveList rootMoves = new MoveList();
+
+	// piece-to index of the move that led to each ply, for the counter move and continuation history
+	private final int[] pieceToStack = new int[MAX_PLY + 1];
+	private final int[][] triedQuiets = new int[MAX_PLY][64];
+	private final int[][] triedPieceTo = new int[MAX_PLY][64];
+	// triangular principal variation table: row ply holds the line from ply onwards
+	private final int[][] pvTable = new int[MAX_PLY + 1][MAX_PLY + 1];
+	private final int[] pvLength = new int[MAX_PLY + 1];
+
+	private ChessMatch match;
+	private SearchListener listener;
+	private List<SearchResult> lines = Collections.emptyList();
+	// root moves already taken by better lines in the current iteration
+	private int[] lineMoves = new int[1];
+	private long startTime;
+	private long nodeLimit;
+	private long nodes;
+	private long quiescenceNodes;
+	private long cutoffs;
+	private long cutoffIndexSum;
+	private long firstMoveCutoffs;
+	private long quietGenerationsSkipped;
+	private volatile boolean stopped;
+
+	public Search(Evaluator evaluator) {
+		this(evaluator, new TranspositionTable(DEFAULT_HASH_MEGABYTES));
+	}
+
+	public Search(Evaluator evaluator, TranspositionTable table) {
+		this.evaluator = evaluator;
+		this.table = table;
+		history.clear();
+	}
+
+	public Evaluator getEvaluator() {
+		return evaluator;
+	}
+
+	public TranspositionTable getTranspositionTable() {
+		return table;
+	}
+
+	public SearchOptions getOptions() {
+		return options;
+	}
+
+	public void setOptions(SearchOptions options) {
+		this.options = options;
+	}
+
+	public SearchListener getListener() {
+		return listener;
+	}
+
+	public void setListener(SearchListener listener) {
+		this.listener = listener;
+	}
+
+	// Lines of the last completed depth, best first; as many as the multi-PV setting and legal moves allow.
+	public List<SearchResult> getLines() {
+		return lines;
+	}
+
+	public long getNodes() {
+		return nodes;
+	}
+
+	public long getQuiescenceNodes() {
+		return quiescenceNodes;
+	}
+
+	public long getCutoffs() {
+		return cutoffs;
+	}
+
+	// Mean position, counting from 0, of the move that caused a beta cutoff; near 0 means good ordering.
+	public double getAverageCutoffIndex() {
+		return (cutoffs == 0) ? 0 : (double)cutoffIndexSum / cutoffs;
+	}
+
+	public double getFirstMoveCutoffRate() {
+		return (cutoffs == 0) ? 0 : (double)firstMoveCutoffs / cutoffs;
+	}
+
+	// Cutoffs reached before the node generated its quiet moves.
+	public long getQuietGenerationsSkipped() {
+		return quietGenerationsSkipped;
+	}
+
+	public static boolean isMateScore(int score) {
+		return Math.abs(score) >= MATE - MAX_PLY;
+	}
+
+	// Asks a running search to return as soon as possible with the last completed iteration.
+	public void stop() {
+		stopped = true;
+	}
+
+	public boolean isStopped() {
+		return stopped;
+	}
+
+	// Forgets everything learned in earlier searches: hash table and move ordering statistics.
+	public void clear() {
+		table.clear();
+		history.clear();
+	}
+
+	public SearchResult search(ChessMatch match, int depth) {
+		if (this.match != match) {
+			this.match = match;
+			for (int i = 0; i < MAX_PLY; i++) {
+				if (pickers[i] == null) {
+					pickers[i] = new MovePicker(match, exchange, history);
+				}
+				else {
+					pickers[i].setMatch(match);
+				}
+			}
+		}
+		stopped = false;
+		nodes = 0;
+		quiescenceNodes = 0;
+		cutoffs = 0;
+		cutoffIndexSum = 0;
+		firstMoveCutoffs = 0;
+		quietGenerationsSkipped = 0;
+		table.newSearch();
+		history.clearKillers();
+		pieceToStack[0] = MoveHistory.NO_PIECE;
+
+		startTime = System.nanoTime();
+		nodeLimit = (options.getNodeLimit() > 0) ? options.getNodeLimit() : Long.MAX_VALUE;
+		int multiPv = options.getMultiPv();
+		lineMoves = new int[multiPv];
+		int[] previousMoves = new int[multiPv];
+		int[] previousScores = new int[multiPv];
+		lines = Collections.emptyList();
+
+		SearchResult result = new SearchResult(Move.NONE, evaluator.evaluate(match), 0, 0);
+		for (int d = 1; d <= depth; d++) {
+			SearchIterationEvent event = SearchIterationEvent.TYPE.isEnabled() ? new SearchIterationEvent() : null;
+			if (event != null) {
+				event.begin();
+			}
+			long probes = table.getProbes();
+			long hits = table.getHits();
+			List<SearchResult> found = new ArrayList<>(multiPv);
+			for (int line = 0; line < multiPv; line++) {
+				int[] root = aspirationSearch(d, line, previousMoves[line], previousScores[line]);
+				if ((stopped && d > 1) || (root[0] == Move.NONE && line > 0)) {
+					break;
+				}
+				lineMoves[line] = root[0];
+				int[] pv = new int[pvLength[0]];
+				System.arraycopy(pvTable[0], 0, pv, 0, pv.length);
+				found.add(new SearchResult(root[0], root[1], d, nodes, pv));
+				if (listener != null && root[0] != Move.NONE) {
+					listener.onInfo(new SearchInfo(d, line + 1, root[1], nodes, System.nanoTime() - startTime, pv));
+				}
+				if (stopped) {
+					break;
+				}
+			}
+			if (event != null && event.shouldCommit()) {
+				long elapsed = System.nanoTime() - startTime;
+				event.depth = d;
+				event.lines = found.size();
+				if (!found.isEmpty() && found.get(0).getMove() != Move.NONE) {
+					event.bestMove = Move.toString(found.get(0).getMove());
+					event.score = found.get(0).getScore();
+				}
+				event.nodes = nodes;
+				event.nodesPerSecond = (elapsed > 0) ? nodes * 1_000_000_000L / elapsed : 0;
+				event.hashProbes = table.getProbes() - probes;
+				event.hashHits = table.getHits() - hits;
+				event.stopped = stopped;
+				event.commit();
+			}
+			if (found.isEmpty()) {
+				break;
+			}
+			// a stopped iteration still improves on the last one through the lines it finished
+			Collections.sort(found, (a, b) -> Integer.compare(b.getScore(), a.getScore()));
+			for (int line = 0; line < found.size(); line++) {
+				previousMoves[line] = found.get(line).getMove();
+				previousScores[line] = found.get(line).getScore();
+			}
+			if (!stopped || found.size() >= lines.size()) {
+				lines = Collections.unmodifiableList(found);
+			}
+			result = found.get(0);
+			if (stopped || result.getMove() == Move.NONE || (multiPv == 1 && isMateScore(result.getScore()))) {
+				break;
+			}
+		}
+		if (Metrics.ENABLED) {
+			Metrics.SEARCH.record(System.nanoTime() - startTime);
+			Metrics.SEARCH_NODES.add(nodes);
+		}
+		if (listener != null) {
+			listener.onFinished(result);
+		}
+		return result;
+	}
+
+	// Searches a narrow window around the previous score first and widens it on the side that failed.
+	private int[] aspirationSearch(int depth, int line, int previousBest, int previousScore) {
+		if (!options.isAspirationWindows() || depth < 4 || isMateScore(previousScore)) {
+			return rootSearch(depth, -INFINITE, INFINITE, previousBest, line);
+		}
+		int delta = ASPIRATION_WINDOW;
+		int alpha = Math.max(previousScore - delta, -INFINITE);
+		int beta = Math.min(previousScore + delta, INFINITE);
+		while (true) {
+			int[] root = rootSearch(depth, alpha, beta, previousBest, line);
+			if (stopped) {
+				return root;
+			}
+			if (root[1] <= alpha) {
+				alpha = Math.max(alpha - delta, -INFINITE);
+			}
+			else if (root[1] >= beta) {
+				beta = Math.min(beta + delta, INFINITE);
+				previousBest = root[0];
+			}
+			else {
+				return root;
+			}
+			delta *= 2;
+		}
+	}
+
+	// Returns the best move and its score, skipping the moves of the first excluded lines; the
+	// previous iteration's move for this line is searched first.
+	private int[] rootSearch(int depth, int alpha, int beta, int previousBest, int excluded) {
+		MoveList list = rootMoves;
+		list.clear();
+		match.generateLegalMoves(list);
+		pvLength[0] = 0;
+		if (list.isEmpty()) {
+			return new int[] { Move.NONE, match.getCheck() ? -MATE : 0 };
+		}
+		int index = list.indexOf(previousBest);
+		if (index > 0) {
+			list.set(index, list.get(0));
+			list.set(0, previousBest);
+		}
+		nodes++;
+		int originalAlpha = alpha;
+		int bestScore = -INFINITE;
+		int best = Move.NONE;
+		int searched = 0;
+		for (int i = 0; i < list.size(); i++) {
+			int move = list.get(i);
+			if (isExcluded(move, excluded)) {
+				continue;
+			}
+			if (searched++ == 0) {
+				best = move;
+			}
+			pieceToStack[1] = pieceTo(move);
+			match.makeMove(move);
+			int score;
+			if (searched == 1) {
+				score = -alphaBeta(depth - 1, -beta, -alpha, 1, true);
+			}
+			else {
+				score = -alphaBeta(depth - 1, -alpha - 1, -alpha, 1, true);
+				if (score > alpha && score < beta) {
+					score = -alphaBeta(depth - 1, -beta, -alpha, 1, true);
+				}
+			}
+			match.undoMove();
+			if (stopped) {
+				break;
+			}
+			if (score > bestScore) {
+				bestScore = score;
+				best = move;
+				if (score > alpha) {
+					alpha = score;
+					updatePv(0, move);
+					if (score >= beta) {
+						break;
+					}
+				}
+			}
+		}
+		if (!stopped && excluded == 0) {
+			int bound = (bestScore >= beta) ? TranspositionTable.LOWER
+					: (bestScore > originalAlpha) ? TranspositionTable.EXACT : TranspositionTable.UPPER;
+			table.store(match.getPositionKey(), best, bestScore, depth, bound, 0);
+		}
+		return new int[] { best, bestScore };
+	}
+
+	private int alphaBeta(int depth, int alpha, int beta, int ply, boolean nullAllowed) {
+		pvLength[ply] = ply;
+		if (match.isRepetition() || match.getHalfmoveClock() >= 100) {
+			return 0;
+		}
+		boolean inCheck = match.getCheck();
+		if (inCheck) {
+			depth++;
+		}
+		if (depth <= 0 || ply >= MAX_PLY - 1) {
+			return quiescence(alpha, beta, ply);
+		}
+		if (++nodes >= nodeLimit) {
+			stopped = true;
+		}
+
+		long key = match.getPositionKey();
+		int hashMove = Move.NONE;
+		int slot = table.probe(key);
+		if (slot >= 0) {
+			hashMove = table.move(slot);
+			if (table.depth(slot) >= depth) {
+				int score = table.score(slot, ply);
+				int bound = table.bound(slot);
+				if (bound == TranspositionTable.EXACT || (bound == TranspositionTable.LOWER && score >= beta)
+						|| (bound == TranspositionTable.UPPER && score <= alpha)) {
+					return score;
+				}
+			}
+		}
+
+		boolean pvNode = beta - alpha > 1;
+		int staticEval = inCheck ? -INFINITE : evaluator.evaluate(match);
+
+		// reverse futility: far enough above beta that a shallow search will not bring it back
+		if (options.isReverseFutilityPruning() && !pvNode && !inCheck && depth <= 6 && !isMateScore(beta)
+				&& staticEval - REVERSE_FUTILITY_MARGIN * depth >= beta) {
+			return staticEval;
+		}
+
+		// null move: if passing still fails high, a real move will too. Without pieces zugzwang is
+		// likely, so the null move is skipped; with a single piece the cutoff is verified.
+		Color side = match.getCurrentPlayer();
+		int pieces = match.getNonPawnPieceCount(side);
+		if (options.isNullMove() && nullAllowed && !pvNode && !inCheck && depth >= 3 && pieces > 0 && staticEval >= beta) {
+			int reduction = 3 + depth / 6;
+			match.makeNullMove();
+			pieceToStack[ply + 1] = MoveHistory.NO_PIECE;
+			int score = -alphaBeta(depth - 1 - reduction, -beta, -beta + 1, ply + 1, false);
+			match.undoMove();
+			if (stopped) {
+				return 0;
+			}
+			if (score >= beta) {
+				if (isMateScore(score)) {
+					score = beta;
+				}
+				if (pieces > 1 || alphaBeta(depth - 1 - reduction, beta - 1, beta, ply, false) >= beta) {
+					return score;
+				}
+			}
+		}
+
+		pvLength[ply] = ply;
+
+		boolean futile = options.isFutilityPruning() && !pvNode && !inCheck && depth < FUTILITY_MARGINS.length
+				&& !isMateScore(alpha) && staticEval + FUTILITY_MARGINS[depth] <= alpha;
+
+		MovePicker picker = pickers[ply];
+		picker.init(hashMove, ply, false, pieceToStack[ply], pieceToStack[ply - 1]);
+		int originalAlpha = alpha;
+		int best = -INFINITE;
+		int bestMove = Move.NONE;
+		int legal = 0;
+		int quiets = 0;
+		int move;
+		while ((move = picker.next()) != Move.NONE) {
+			int pieceTo = pieceTo(move);
+			match.makeMove(move);
+			if (!match.isLastMoveLegal()) {
+				match.undoMove();
+				continue;
+			}
+			legal++;
+			boolean quiet = !Move.isCapture(move) && !Move.isPromotion(move);
+			boolean givesCheck = match.getCheck();
+
+			// futility: a quiet move cannot raise a hopeless static score above alpha this close to the leaves
+			if (futile && quiet && !givesCheck && legal > 1) {
+				match.undoMove();
+				continue;
+			}
+
+			pieceToStack[ply + 1] = pieceTo;
+			int score;
+			if (legal == 1) {
+				score = -alphaBeta(depth - 1, -beta, -alpha, ply + 1, true);
+			}
+			else {
+				// late quiet moves are searched shallower first and again at full depth if they surprise
+				int reduction = 0;
+				if (options.isLateMoveReductions() && quiet && !inCheck && !givesCheck && depth >= 3 && legal > 3) {
+					reduction = REDUCTIONS[Math.min(depth, 63)][Math.min(legal, 63)];
+					if (pvNode) {
+						reduction--;
+					}
+					reduction = Math.max(0, Math.min(reduction, depth - 2));
+				}
+				score = -alphaBeta(depth - 1 - reduction, -alpha - 1, -alpha, ply + 1, true);
+				if (score > alpha && reduction > 0) {
+					score = -alphaBeta(depth - 1, -alpha - 1, -alpha, ply + 1, true);
+				}
+				if (score > alpha && score < beta) {
+					score = -alphaBeta(depth - 1, -beta, -alpha, ply + 1, true);
+				}
+			}
+			match.undoMove();
+			if (stopped) {
+				return 0;
+			}
+			if (score > best) {
+				best = score;
+				bestMove = move;
+				if (score > alpha) {
+					alpha = score;
+					updatePv(ply, move);
+					if (score >= beta) {
+						cutoffs++;
+						cutoffIndexSum += legal - 1;
+						if (legal == 1) {
+							firstMoveCutoffs++;
+						}
+						if (!picker.generatedQuiets()) {
+							quietGenerationsSkipped++;
+						}
+						if (quiet) {
+							history.update(ply, depth, match.getCurrentPlayer().ordinal(), move, pieceTo,
+									pieceToStack[ply], pieceToStack[ply - 1], triedQuiets[ply], triedPieceTo[ply], quiets);
+						}
+						table.store(key, move, score, depth, TranspositionTable.LOWER, ply);
+						return score;
+					}
+				}
+			}
+			if (quiet && quiets < triedQuiets[ply].length) {
+				triedQuiets[ply][quiets] = move;
+				triedPieceTo[ply][quiets] = pieceTo;
+				quiets++;
+			}
+		}
+		if (legal == 0) {
+			return inCheck ? -MATE + ply : 0;
+		}
+		if (best > originalAlpha) {
+			table.store(key, bestMove, best, depth, TranspositionTable.EXACT, ply);
+		}
+		else {
+			table.store(key, Move.NONE, best, depth, TranspositionTable.UPPER, ply);
+		}
+		return best;
+	}
+
+	// Resolves captures and promotions until the position is quiet. In check every evasion is searched.
+	private int quiescence(int alpha, int beta, int ply) {
+		pvLength[ply] = ply;
+		if (++nodes >= nodeLimit) {
+			stopped = true;
+		}
+		quiescenceNodes++;
+		boolean inCheck = match.getCheck();
+		int standPat = -INFINITE;
+		if (!inCheck) {
+			standPat = evaluator.evaluate(match);
+			if (standPat >= beta || ply >= MAX_PLY - 1) {
+				return standPat;
+			}
+			// delta pruning: not even winning a queen and promoting would reach alpha
+			if (standPat + StaticExchange.VALUES[PieceType.QUEEN.ordinal()] * 2 - StaticExchange.VALUES[PieceType.PAWN.ordinal()] < alpha) {
+				return alpha;
+			}
+			if (standPat > alpha) {
+				alpha = standPat;
+			}
+		}
+		else if (ply >= MAX_PLY - 1) {
+			return evaluator.evaluate(match);
+		}
+
+		int hashMove = Move.NONE;
+		int slot = table.probe(match.getPositionKey());
+		if (slot >= 0) {
+			hashMove = table.move(slot);
+		}
+		MovePicker picker = pickers[ply];
+		picker.init(hashMove, ply, true, pieceToStack[ply], pieceToStack[ply - 1]);
+		int best = standPat;
+		int legal = 0;
+		int move;
+		while ((move = picker.next()) != Move.NONE) {
+			if (!inCheck && !Move.isPromotion(move) && standPat + capturedValue(move) + DELTA_MARGIN < alpha) {
+				continue;
+			}
+			int pieceTo = pieceTo(move);
+			match.makeMove(move);
+			if (!match.isLastMoveLegal()) {
+				match.undoMove();
+				continue;
+			}
+			legal++;
+			pieceToStack[ply + 1] = pieceTo;
+			int score = -quiescence(-beta, -alpha, ply + 1);
+			match.undoMove();
+			if (stopped) {
+				return 0;
+			}
+			if (score > best) {
+				best = score;
+				if (score > alpha) {
+					alpha = score;
+					if (score >= beta) {
+						break;
+					}
+				}
+			}
+		}
+		if (inCheck && legal == 0) {
+			return -MATE + ply;
+		}
+		return best;
+	}
+
+	private boolean isExcluded(int move, int excluded) {
+		for (int i = 0; i < excluded; i++) {
+			if (lineMoves[i] == move) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void updatePv(int ply, int move) {
+		pvTable[ply][ply] = move;
+		int length = pvLength[ply + 1];
+		System.arraycopy(pvTable[ply + 1], ply + 1, pvTable[ply], ply + 1, length - ply - 1);
+		pvLength[ply] = length;
+	}
+
+	private int pieceTo(int move) {
+		return MoveHistory.pieceTo(MoveHistory.pieceIndex(match.pieceAt(Move.from(move))), move);
+	}
+
+	private int capturedValue(int move) {
+		if (Move.isEnPassant(move)) {
+			return StaticExchange.VALUES[PieceType.PAWN.ordinal()];
+		}
+		ChessPiece captured = match.pieceAt(Move.to(move));
+		return (captured == null) ? 0 : StaticExchange.VALUES[captured.getType().ordinal()];
+	}
+}
@@ -0,0 +1,67 @@
+package chess.engine;
+
+import chess.Move;
+
+public class SearchInfo {
+
+	private final int depth;
+	private final int multiPv;
+	private final int score;
+	private final long nodes;
+	private final long elapsedNanos;
+	private final int[] pv;
+
+	public SearchInfo(int depth, int multiPv, int score, long nodes, long elapsedNanos, int[] pv) {
+		this.depth = depth;
+		this.multiPv = multiPv;
+		this.score = score;
+		this.nodes = nodes;
+		this.elapsedNanos = elapsedNanos;
+		this.pv = pv;
+	}
+
+	public int getDepth() {
+		return depth;
+	}
+
+	// Rank of this line among the candidate moves, starting at 1.
+	public int getMultiPv() {
+		return multiPv;
+	}
+
+	public int getScore() {
+		return score;
+	}
+
+	public long getNodes() {
+		return nodes;
+	}
+
+	public long getElapsedMillis() {
+		return elapsedNanos / 1_000_000;
+	}
+
+	public long getNodesPerSecond() {
+		return (elapsedNanos == 0) ? 0 : nodes * 1_000_000_000L / elapsedNanos;
+	}
+
+	public int[] getPv() {
+		return pv.clone();
+	}
+
+	public int getMove() {
+		return (pv.length == 0) ? Move.NONE : pv[0];
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("depth ").append(depth).append(" multipv ").append(multiPv).append(" score ").append(score)
+				.append(" nodes ").append(nodes).append(" nps ").append(getNodesPerSecond())
+				.append(" time ").append(getElapsedMillis()).append(" pv");
+		for (int move : pv) {
+			sb.append(' ').append(Move.toString(move));
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,12 @@
+package chess.engine;
+
+// Receives progress from a running search on the searching thread, so implementations should
+// return quickly. Calling Search.stop() from here or from any other thread ends the search early.
+public interface SearchListener {
+
+	// One completed line: every principal variation of every finished depth is reported.
+	void onInfo(SearchInfo info);
+
+	default void onFinished(SearchResult result) {
+	}
+}
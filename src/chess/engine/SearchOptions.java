@@ -0,0 +1,96 @@
+package chess.engine;
+
+// Switches for the selective parts of the search, all on by default, so that each one's
+// effect can be measured on its own, plus the number of principal variations and a node budget.
+public class SearchOptions {
+
+	private boolean nullMove = true;
+	private boolean lateMoveReductions = true;
+	private boolean futilityPruning = true;
+	private boolean reverseFutilityPruning = true;
+	private boolean aspirationWindows = true;
+	private int multiPv = 1;
+	private long nodeLimit;
+
+	// Plain alpha-beta with none of the selective techniques.
+	public static SearchOptions none() {
+		SearchOptions options = new SearchOptions();
+		options.nullMove = false;
+		options.lateMoveReductions = false;
+		options.futilityPruning = false;
+		options.reverseFutilityPruning = false;
+		options.aspirationWindows = false;
+		return options;
+	}
+
+	public boolean isNullMove() {
+		return nullMove;
+	}
+
+	public void setNullMove(boolean nullMove) {
+		this.nullMove = nullMove;
+	}
+
+	public boolean isLateMoveReductions() {
+		return lateMoveReductions;
+	}
+
+	public void setLateMoveReductions(boolean lateMoveReductions) {
+		this.lateMoveReductions = lateMoveReductions;
+	}
+
+	public boolean isFutilityPruning() {
+		return futilityPruning;
+	}
+
+	public void setFutilityPruning(boolean futilityPruning) {
+		this.futilityPruning = futilityPruning;
+	}
+
+	public boolean isReverseFutilityPruning() {
+		return reverseFutilityPruning;
+	}
+
+	public void setReverseFutilityPruning(boolean reverseFutilityPruning) {
+		this.reverseFutilityPruning = reverseFutilityPruning;
+	}
+
+	public boolean isAspirationWindows() {
+		return aspirationWindows;
+	}
+
+	public void setAspirationWindows(boolean aspirationWindows) {
+		this.aspirationWindows = aspirationWindows;
+	}
+
+	public int getMultiPv() {
+		return multiPv;
+	}
+
+	// Number of best root moves searched each with its own line and score.
+	public void setMultiPv(int multiPv) {
+		if (multiPv < 1) {
+			throw new IllegalArgumentException("Multi-PV must be at least 1");
+		}
+		this.multiPv = multiPv;
+	}
+
+	public long getNodeLimit() {
+		return nodeLimit;
+	}
+
+	// Nodes after which the search stops and keeps its last complete iteration; 0 for no limit.
+	public void setNodeLimit(long nodeLimit) {
+		if (nodeLimit < 0) {
+			throw new IllegalArgumentException("Node limit cannot be negative");
+		}
+		this.nodeLimit = nodeLimit;
+	}
+
+	@Override
+	public String toString() {
+		return "nullMove=" + nullMove + " lmr=" + lateMoveReductions + " futility=" + futilityPruning
+				+ " reverseFutility=" + reverseFutilityPruning + " aspiration=" + aspirationWindows
+				+ " multiPv=" + multiPv + " nodeLimit=" + nodeLimit;
+	}
+}
@@ -0,0 +1,52 @@
+package chess.engine;
+
+import chess.Move;
+
+public class SearchResult {
+
+	private final int move;
+	private final int score;
+	private final int depth;
+	private final long nodes;
+	private final int[] pv;
+
+	public SearchResult(int move, int score, int depth, long nodes) {
+		this(move, score, depth, nodes, (move == Move.NONE) ? new int[0] : new int[] { move });
+	}
+
+	public SearchResult(int move, int score, int depth, long nodes, int[] pv) {
+		this.move = move;
+		this.score = score;
+		this.depth = depth;
+		this.nodes = nodes;
+		this.pv = pv;
+	}
+
+	// Best move found, or Move.NONE when the side to move has no legal move.
+	public int getMove() {
+		return move;
+	}
+
+	// Centipawns from the side to move's point of view; see Search.isMateScore.
+	public int getScore() {
+		return score;
+	}
+
+	public int getDepth() {
+		return depth;
+	}
+
+	public long getNodes() {
+		return nodes;
+	}
+
+	// Expected line starting with the best move; it may stop short where the hash table cut the search.
+	public int[] getPv() {
+		return pv.clone();
+	}
+
+	@Override
+	public String toString() {
+		return "depth " + depth + " score " + score + " nodes " + nodes + " move " + (move == Move.NONE ? "none" : Move.toString(move));
+	}
+}
@@ -0,0 +1,168 @@
+package chess.engine;
+
+import java.util.Arrays;
+
+import chess.ChessMatch;
+import chess.ChessPiece;
+import chess.Color;
+import chess.Move;
+import chess.PieceType;
+
+// Static exchange evaluation: the material balance of the capture sequence on one square, each
+// side recapturing with its least valuable attacker and free to stop. Works from precomputed
+// attack tables and a set of squares already vacated, without making any moves, and sees
+// x-ray attackers lined up behind the pieces that have captured. Holds a scratch swap list,
+// so an instance belongs to one thread.
+public final class StaticExchange {
+
+	// by piece type: pawn, knight, bishop, rook, queen, king
+	public static final int[] VALUES = { 100, 320, 330, 500, 900, 20000 };
+
+	private static final int[][] STEPS = { { -1, 0 }, { 1, 0 }, { 0, -1 }, { 0, 1 }, { -1, -1 }, { -1, 1 }, { 1, -1 }, { 1, 1 } };
+	private static final int[][] JUMPS = { { -2, -1 }, { -2, 1 }, { -1, -2 }, { -1, 2 }, { 1, -2 }, { 1, 2 }, { 2, -1 }, { 2, 1 } };
+
+	// [square][direction]: squares outward from the square; the first four directions are orthogonal
+	private static final int[][][] RAYS = new int[64][8][];
+	private static final int[][] KNIGHT_SQUARES = new int[64][];
+	private static final int[][] KING_SQUARES = new int[64][];
+	// [color][square]: where a pawn of that color must stand to attack the square
+	private static final int[][][] PAWN_ATTACKERS = new int[2][64][];
+
+	static {
+		for (int sq = 0; sq < 64; sq++) {
+			int row = sq / 8;
+			int col = sq % 8;
+			for (int d = 0; d < 8; d++) {
+				int[] ray = new int[7];
+				int n = 0;
+				for (int r = row + STEPS[d][0], c = col + STEPS[d][1]; onBoard(r, c); r += STEPS[d][0], c += STEPS[d][1]) {
+					ray[n++] = r * 8 + c;
+				}
+				RAYS[sq][d] = Arrays.copyOf(ray, n);
+			}
+			KNIGHT_SQUARES[sq] = targets(row, col, JUMPS);
+			KING_SQUARES[sq] = targets(row, col, STEPS);
+			// a white pawn attacks towards row - 1, so it stands one row below (row + 1)
+			PAWN_ATTACKERS[Color.WHITE.ordinal()][sq] = targets(row, col, new int[][] { { 1, -1 }, { 1, 1 } });
+			PAWN_ATTACKERS[Color.BLACK.ordinal()][sq] = targets(row, col, new int[][] { { -1, -1 }, { -1, 1 } });
+		}
+	}
+
+	private final int[] gain = new int[32];
+
+	private static boolean onBoard(int row, int col) {
+		return row >= 0 && row < 8 && col >= 0 && col < 8;
+	}
+
+	private static int[] targets(int row, int col, int[][] offsets) {
+		int[] squares = new int[offsets.length];
+		int n = 0;
+		for (int[] o : offsets) {
+			if (onBoard(row + o[0], col + o[1])) {
+				squares[n++] = (row + o[0]) * 8 + col + o[1];
+			}
+		}
+		return Arrays.copyOf(squares, n);
+	}
+
+	// Material the side to move gains by playing the move and the best exchange that follows.
+	public int see(ChessMatch match, int move) {
+		int from = Move.from(move);
+		int to = Move.to(move);
+		ChessPiece mover = match.pieceAt(from);
+		ChessPiece target = match.pieceAt(to);
+		long vacated = 1L << from;
+		int onSquare = VALUES[mover.getType().ordinal()];
+		if (Move.isEnPassant(move)) {
+			gain[0] = VALUES[PieceType.PAWN.ordinal()];
+			vacated |= 1L << ((from & ~7) | (to & 7));
+		}
+		else {
+			gain[0] = (target == null) ? 0 : VALUES[target.getType().ordinal()];
+		}
+		if (Move.isPromotion(move)) {
+			int promotion = VALUES[Move.promotion(move).ordinal()];
+			gain[0] += promotion - VALUES[PieceType.PAWN.ordinal()];
+			onSquare = promotion;
+		}
+		Color side = (mover.getColor() == Color.WHITE) ? Color.BLACK : Color.WHITE;
+		int d = 0;
+		while (d < gain.length - 1) {
+			int attacker = leastValuableAttacker(match, to, side, vacated);
+			if (attacker < 0) {
+				break;
+			}
+			d++;
+			gain[d] = onSquare - gain[d - 1];
+			// this capture cannot help whichever side is choosing, so the exchange ends before it
+			if (Math.max(-gain[d - 1], gain[d]) < 0) {
+				d--;
+				break;
+			}
+			ChessPiece p = match.pieceAt(attacker);
+			onSquare = VALUES[p.getType().ordinal()];
+			vacated |= 1L << attacker;
+			side = (side == Color.WHITE) ? Color.BLACK : Color.WHITE;
+		}
+		for (; d > 0; d--) {
+			gain[d - 1] = -Math.max(-gain[d - 1], gain[d]);
+		}
+		return gain[0];
+	}
+
+	// Whether the move wins at least the given margin in the exchange.
+	public boolean seeAtLeast(ChessMatch match, int move, int threshold) {
+		return see(match, move) >= threshold;
+	}
+
+	// Square of the cheapest piece of the given color attacking the square through the vacated ones, or -1.
+	private static int leastValuableAttacker(ChessMatch match, int square, Color color, long vacated) {
+		int best = -1;
+		int bestValue = Integer.MAX_VALUE;
+		for (int sq : PAWN_ATTACKERS[color.ordinal()][square]) {
+			if (isPiece(match, sq, color, PieceType.PAWN, vacated)) {
+				return sq;
+			}
+		}
+		for (int sq : KNIGHT_SQUARES[square]) {
+			if (isPiece(match, sq, color, PieceType.KNIGHT, vacated)) {
+				return sq;
+			}
+		}
+		for (int dir = 0; dir < 8; dir++) {
+			for (int sq : RAYS[square][dir]) {
+				if ((vacated & (1L << sq)) != 0) {
+					continue;
+				}
+				ChessPiece p = match.pieceAt(sq);
+				if (p == null) {
+					continue;
+				}
+				PieceType type = p.getType();
+				boolean slides = (type == PieceType.QUEEN) || (type == ((dir < 4) ? PieceType.ROOK : PieceType.BISHOP));
+				if (p.getColor() == color && slides && VALUES[type.ordinal()] < bestValue) {
+					best = sq;
+					bestValue = VALUES[type.ordinal()];
+				}
+				break;
+			}
+		}
+		if (best >= 0) {
+			return best;
+		}
+		for (int sq : KING_SQUARES[square]) {
+			if (isPiece(match, sq, color, PieceType.KING, vacated)) {
+				return sq;
+			}
+		}
+		return -1;
+	}
+
+	private static boolean isPiece(ChessMatch match, int sq, Color color, PieceType type, long vacated) {
+		if ((vacated & (1L << sq)) != 0) {
+			return false;
+		}
+		ChessPiece p = match.pieceAt(sq);
+		return p != null && p.getColor() == color && p.getType() == type;
+	}
+}
@@ -0,0 +1,132 @@
+package chess.engine;
+
+import java.util.Arrays;
+
+import chess.Move;
+
+// Position key -> best move, score, depth and bound, packed into one long per slot next to the key.
+// A slot is replaced by a deeper search, by the same position, or by any result of a newer search.
+// Single-threaded, like the Search that owns it.
+public final class TranspositionTable {
+
+	public static final int EXACT = 0;
+	// the score is at least the stored one (beta cutoff) or at most it (all moves failed low)
+	public static final int LOWER = 1;
+	public static final int UPPER = 2;
+
+	private final long[] keys;
+	private final long[] data;
+	private final int mask;
+	private int generation;
+
+	private long probes;
+	private long hits;
+
+	public TranspositionTable(int megabytes) {
+		long slots = Math.max(1L, (long)megabytes * 1024 * 1024 / 16);
+		int size = Integer.highestOneBit((int)Math.min(slots, 1 << 30));
+		keys = new long[size];
+		data = new long[size];
+		mask = size - 1;
+	}
+
+	public int size() {
+		return keys.length;
+	}
+
+	// Ages the entries of earlier searches so that they give way first.
+	public void newSearch() {
+		generation = (generation + 1) & 0xFF;
+	}
+
+	// Slot holding the key, or -1.
+	public int probe(long key) {
+		probes++;
+		int slot = (int)(key ^ (key >>> 32)) & mask;
+		if (keys[slot] == key && data[slot] != 0) {
+			hits++;
+			return slot;
+		}
+		return -1;
+	}
+
+	public int move(int slot) {
+		return (int)(data[slot] & 0xFFFF);
+	}
+
+	public int score(int slot, int ply) {
+		return fromStored((short)(data[slot] >>> 16), ply);
+	}
+
+	public int depth(int slot) {
+		return (int)(data[slot] >>> 32) & 0xFF;
+	}
+
+	public int bound(int slot) {
+		return (int)(data[slot] >>> 40) & 0x3;
+	}
+
+	public void store(long key, int move, int score, int depth, int bound, int ply) {
+		int slot = (int)(key ^ (key >>> 32)) & mask;
+		long old = data[slot];
+		int oldGeneration = (int)(old >>> 42) & 0xFF;
+		if (old != 0 && keys[slot] != key && oldGeneration == generation && ((int)(old >>> 32) & 0xFF) > depth) {
+			return;
+		}
+		if (move == Move.NONE && keys[slot] == key) {
+			// keep the move a shallower or failed-low search did not find
+			move = (int)(old & 0xFFFF);
+		}
+		keys[slot] = key;
+		data[slot] = (move & 0xFFFFL) | ((toStored(score, ply) & 0xFFFFL) << 16) | ((long)Math.max(0, Math.min(depth, 255)) << 32)
+				| ((long)bound << 40) | ((long)generation << 42) | (1L << 50);
+	}
+
+	// Mate scores are stored relative to the position, not to the root, so that they stay valid at other plies.
+	private static int toStored(int score, int ply) {
+		if (score >= Search.MATE - Search.MAX_PLY) {
+			return score + ply;
+		}
+		if (score <= -Search.MATE + Search.MAX_PLY) {
+			return score - ply;
+		}
+		return score;
+	}
+
+	private static int fromStored(int score, int ply) {
+		if (score >= Search.MATE - Search.MAX_PLY) {
+			return score - ply;
+		}
+		if (score <= -Search.MATE + Search.MAX_PLY) {
+			return score + ply;
+		}
+		return score;
+	}
+
+	public long getProbes() {
+		return probes;
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	// Used slots per thousand among the first thousand, as engines usually report it.
+	public int hashfull() {
+		int used = 0;
+		int n = Math.min(1000, keys.length);
+		for (int i = 0; i < n; i++) {
+			if (data[i] != 0 && ((int)(data[i] >>> 42) & 0xFF) == generation) {
+				used++;
+			}
+		}
+		return used * 1000 / n;
+	}
+
+	public void clear() {
+		Arrays.fill(keys, 0);
+		Arrays.fill(data, 0);
+		probes = 0;
+		hits = 0;
+	}
+}
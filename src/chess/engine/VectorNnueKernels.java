@@ -0,0 +1,55 @@
+package chess.engine;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// NnueKernels on the Vector API, at the CPU's preferred width. The last, partial vector of a
+// loop is masked, so any hidden size works. Only loaded by NnueKernels when the module is there.
+final class VectorNnueKernels extends NnueKernels {
+
+	private static final VectorSpecies<Short> SHORTS = ShortVector.SPECIES_PREFERRED;
+	// same bit size, so a short vector widens into two int vectors
+	private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+
+	@Override
+	void add(short[] accumulator, short[] weights, int offset, int length) {
+		for (int i = 0; i < length; i += SHORTS.length()) {
+			VectorMask<Short> m = SHORTS.indexInRange(i, length);
+			ShortVector a = ShortVector.fromArray(SHORTS, accumulator, i, m);
+			ShortVector w = ShortVector.fromArray(SHORTS, weights, offset + i, m);
+			a.add(w).intoArray(accumulator, i, m);
+		}
+	}
+
+	@Override
+	void subtract(short[] accumulator, short[] weights, int offset, int length) {
+		for (int i = 0; i < length; i += SHORTS.length()) {
+			VectorMask<Short> m = SHORTS.indexInRange(i, length);
+			ShortVector a = ShortVector.fromArray(SHORTS, accumulator, i, m);
+			ShortVector w = ShortVector.fromArray(SHORTS, weights, offset + i, m);
+			a.sub(w).intoArray(accumulator, i, m);
+		}
+	}
+
+	@Override
+	int layer(short[] accumulator, short[] weights, int offset, int length) {
+		IntVector sum = IntVector.zero(INTS);
+		for (int i = 0; i < length; i += SHORTS.length()) {
+			// masked lanes load as 0, which adds nothing to the sum
+			VectorMask<Short> m = SHORTS.indexInRange(i, length);
+			ShortVector a = ShortVector.fromArray(SHORTS, accumulator, i, m)
+					.max((short)0).min((short)NnueNetwork.ACTIVATION_SCALE);
+			ShortVector w = ShortVector.fromArray(SHORTS, weights, offset + i, m);
+			// clipped activations times int16 weights overflow int16, so multiply as ints
+			for (int part = 0; part < 2; part++) {
+				IntVector ai = (IntVector)a.convertShape(VectorOperators.S2I, INTS, part);
+				IntVector wi = (IntVector)w.convertShape(VectorOperators.S2I, INTS, part);
+				sum = sum.add(ai.mul(wi));
+			}
+		}
+		return sum.reduceLanes(VectorOperators.ADD);
+	}
+}
@@ -0,0 +1,44 @@
+package chess.index;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// A read-only file mapped in 1 GB segments, so it may exceed what one buffer can address.
+// Reads are absolute and therefore safe from several threads.
+final class MappedFile implements Closeable {
+
+	private static final int SEGMENT_SHIFT = 30;
+	private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+	private final FileChannel channel;
+	private final MappedByteBuffer[] segments;
+	private final long size;
+
+	MappedFile(Path path) throws IOException {
+		channel = FileChannel.open(path, StandardOpenOption.READ);
+		size = channel.size();
+		segments = new MappedByteBuffer[(int)((size + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+		for (int i = 0; i < segments.length; i++) {
+			long start = (long)i << SEGMENT_SHIFT;
+			segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(size - start, 1L << SEGMENT_SHIFT));
+		}
+	}
+
+	long size() {
+		return size;
+	}
+
+	// The position must be a multiple of 8, so that the long never spans two segments.
+	long readLong(long position) {
+		return segments[(int)(position >>> SEGMENT_SHIFT)].getLong((int)(position & SEGMENT_MASK));
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
@@ -0,0 +1,181 @@
+package chess.index;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/*
+ * Open-addressing hash table of (position key, move) -> game and result counts, kept in a direct
+ * buffer outside the heap. Slots are 32 bytes: key, move, games, white wins, draws, black wins
+ * and padding; a zero move marks a free slot, since Move.NONE is never played. Linear probing.
+ * Counts are unsigned 32-bit: an entry whose game count is about to wrap reports the table full,
+ * like a new entry that does not fit, so the caller spills it and counting goes on in a new run.
+ */
+final class MoveCountTable {
+
+	static final int ENTRY_BYTES = 32;
+
+	private static final int KEY = 0;
+	private static final int MOVE = 8;
+	private static final int GAMES = 12;
+	private static final int RESULTS = 16;
+
+	// keep probe sequences short
+	private static final double MAX_LOAD = 0.7;
+
+	private final ByteBuffer buffer;
+	private final int mask;
+	private final int maxSize;
+	private int size;
+
+	// Largest power-of-two number of slots that fits in the given bytes.
+	MoveCountTable(long bytes) {
+		long slots = Long.highestOneBit(Math.max(bytes / ENTRY_BYTES, 2));
+		if (slots * ENTRY_BYTES > Integer.MAX_VALUE) {
+			slots = Integer.highestOneBit(Integer.MAX_VALUE / ENTRY_BYTES);
+		}
+		buffer = ByteBuffer.allocateDirect((int)(slots * ENTRY_BYTES));
+		mask = (int)slots - 1;
+		maxSize = (int)(slots * MAX_LOAD);
+	}
+
+	int size() {
+		return size;
+	}
+
+	int capacity() {
+		return mask + 1;
+	}
+
+	// Counts one game playing the move from the position; result is 0 for a white win, 1 for a
+	// draw and 2 for a black win. Returns false, counting nothing, when a new entry does not fit
+	// or the entry's counts are full.
+	boolean add(long key, int move, int result) {
+		int slot = (int)(mix(key ^ (long)move << 48) & mask);
+		while (true) {
+			int offset = slot * ENTRY_BYTES;
+			int stored = buffer.getInt(offset + MOVE);
+			if (stored == 0) {
+				if (size >= maxSize) {
+					return false;
+				}
+				buffer.putLong(offset + KEY, key);
+				buffer.putInt(offset + MOVE, move);
+				size++;
+				increment(offset + GAMES);
+				increment(offset + RESULTS + 4 * result);
+				return true;
+			}
+			if (stored == move && buffer.getLong(offset + KEY) == key) {
+				if (buffer.getInt(offset + GAMES) == -1) {
+					return false;
+				}
+				increment(offset + GAMES);
+				increment(offset + RESULTS + 4 * result);
+				return true;
+			}
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	private void increment(int offset) {
+		buffer.putInt(offset, buffer.getInt(offset) + 1);
+	}
+
+	private static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	// Writes the entries sorted by key and move as a run of (long key, int move, four long counts),
+	// preceded by their number, and empties the table. The sort reuses the table's own buffer.
+	// Counts are widened to longs so that merged runs can hold their sums.
+	void spill(DataOutputStream out) throws IOException {
+		int n = 0;
+		for (int slot = 0; slot <= mask; slot++) {
+			int offset = slot * ENTRY_BYTES;
+			if (buffer.getInt(offset + MOVE) != 0) {
+				if (slot != n) {
+					copy(offset, n * ENTRY_BYTES);
+				}
+				n++;
+			}
+		}
+		sort(0, n - 1);
+		out.writeLong(n);
+		for (int i = 0; i < n; i++) {
+			int offset = i * ENTRY_BYTES;
+			out.writeLong(buffer.getLong(offset + KEY));
+			out.writeInt(buffer.getInt(offset + MOVE));
+			for (int field = GAMES; field < ENTRY_BYTES - 4; field += 4) {
+				out.writeLong(buffer.getInt(offset + field) & 0xFFFFFFFFL);
+			}
+		}
+		for (int offset = 0; offset < buffer.capacity(); offset += 8) {
+			buffer.putLong(offset, 0);
+		}
+		size = 0;
+	}
+
+	private void copy(int from, int to) {
+		for (int i = 0; i < ENTRY_BYTES; i += 8) {
+			buffer.putLong(to + i, buffer.getLong(from + i));
+		}
+	}
+
+	private void swap(int i, int j) {
+		int a = i * ENTRY_BYTES;
+		int b = j * ENTRY_BYTES;
+		for (int k = 0; k < ENTRY_BYTES; k += 8) {
+			long t = buffer.getLong(a + k);
+			buffer.putLong(a + k, buffer.getLong(b + k));
+			buffer.putLong(b + k, t);
+		}
+	}
+
+	private int compare(int i, long key, int move) {
+		int offset = i * ENTRY_BYTES;
+		int c = Long.compare(buffer.getLong(offset + KEY), key);
+		return (c != 0) ? c : Integer.compare(buffer.getInt(offset + MOVE), move);
+	}
+
+	private void sort(int low, int high) {
+		while (high - low > 16) {
+			int mid = (low + high) >>> 1;
+			long pivotKey = buffer.getLong(mid * ENTRY_BYTES + KEY);
+			int pivotMove = buffer.getInt(mid * ENTRY_BYTES + MOVE);
+			int i = low;
+			int j = high;
+			while (i <= j) {
+				while (compare(i, pivotKey, pivotMove) < 0) {
+					i++;
+				}
+				while (compare(j, pivotKey, pivotMove) > 0) {
+					j--;
+				}
+				if (i <= j) {
+					swap(i++, j--);
+				}
+			}
+			if (j - low < high - i) {
+				sort(low, j);
+				low = i;
+			}
+			else {
+				sort(i, high);
+				high = j;
+			}
+		}
+		for (int i = low + 1; i <= high; i++) {
+			for (int j = i; j > low; j--) {
+				int offset = (j - 1) * ENTRY_BYTES;
+				if (compare(j, buffer.getLong(offset + KEY), buffer.getInt(offset + MOVE)) >= 0) {
+					break;
+				}
+				swap(j, j - 1);
+			}
+		}
+	}
+}
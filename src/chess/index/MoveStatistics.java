@@ -0,0 +1,50 @@
+package chess.index;
+
+import chess.Move;
+
+public class MoveStatistics {
+
+	private final int move;
+	private final long games;
+	private final long whiteWins;
+	private final long draws;
+	private final long blackWins;
+
+	public MoveStatistics(int move, long games, long whiteWins, long draws, long blackWins) {
+		this.move = move;
+		this.games = games;
+		this.whiteWins = whiteWins;
+		this.draws = draws;
+		this.blackWins = blackWins;
+	}
+
+	public int getMove() {
+		return move;
+	}
+
+	public long getGames() {
+		return games;
+	}
+
+	public long getWhiteWins() {
+		return whiteWins;
+	}
+
+	public long getDraws() {
+		return draws;
+	}
+
+	public long getBlackWins() {
+		return blackWins;
+	}
+
+	// Points per game for White, as a percentage, counting draws as half a point.
+	public double getWhiteScore() {
+		return (games == 0) ? 0 : (whiteWins + draws / 2.0) * 100 / games;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s games %d +%d =%d -%d white %.1f%%", Move.toString(move), games, whiteWins, draws, blackWins, getWhiteScore());
+	}
+}
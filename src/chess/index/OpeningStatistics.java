@@ -0,0 +1,79 @@
+package chess.index;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import chess.ChessMatch;
+
+/*
+ * Read-only view of the file written by StatisticsAggregator: after a 16-byte header, 48-byte
+ * entries of position key, move, games, white wins, draws and black wins, sorted by key and
+ * move. Memory mapped like PositionIndex and searched the same way.
+ */
+public class OpeningStatistics implements Closeable {
+
+	static final long MAGIC = 0x5354415453303031L;
+
+	private static final int HEADER_BYTES = 16;
+	private static final int ENTRY_BYTES = 48;
+
+	private final MappedFile file;
+	private final long count;
+
+	public OpeningStatistics(Path path) throws IOException {
+		file = new MappedFile(path);
+		long size = file.size();
+		if (size < HEADER_BYTES || file.readLong(0) != MAGIC) {
+			file.close();
+			throw new IOException("Not a statistics file");
+		}
+		count = file.readLong(8);
+		if (size != HEADER_BYTES + count * ENTRY_BYTES) {
+			file.close();
+			throw new IOException("Truncated statistics file");
+		}
+	}
+
+	public long getEntryCount() {
+		return count;
+	}
+
+	public List<MoveStatistics> lookup(ChessMatch match) {
+		return lookup(match.getPositionKey());
+	}
+
+	// Moves played from the position, most popular first.
+	public List<MoveStatistics> lookup(long key) {
+		long low = 0;
+		long high = count;
+		while (low < high) {
+			long mid = (low + high) >>> 1;
+			if (file.readLong(offset(mid)) < key) {
+				low = mid + 1;
+			}
+			else {
+				high = mid;
+			}
+		}
+		List<MoveStatistics> moves = new ArrayList<>();
+		for (long i = low; i < count && file.readLong(offset(i)) == key; i++) {
+			long offset = offset(i);
+			moves.add(new MoveStatistics((int)file.readLong(offset + 8), file.readLong(offset + 16),
+					file.readLong(offset + 24), file.readLong(offset + 32), file.readLong(offset + 40)));
+		}
+		moves.sort((a, b) -> Long.compare(b.getGames(), a.getGames()));
+		return moves;
+	}
+
+	private static long offset(long index) {
+		return HEADER_BYTES + index * ENTRY_BYTES;
+	}
+
+	@Override
+	public void close() throws IOException {
+		file.close();
+	}
+}
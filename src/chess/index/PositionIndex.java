@@ -0,0 +1,98 @@
+package chess.index;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import chess.ChessMatch;
+
+/*
+ * Read-only view of an index written by PositionIndexBuilder: postings of 16 bytes, a position
+ * key and a packed (game id, ply), sorted by key, after a 16-byte header. The file is memory
+ * mapped, so the heap used does not grow with the corpus, and a lookup is a binary search over
+ * the mapped postings. Safe to query from several threads.
+ */
+public class PositionIndex implements Closeable {
+
+	static final long MAGIC = 0x504F534958303031L;
+	static final int HEADER_BYTES = 16;
+	static final int POSTING_BYTES = 16;
+
+	private final MappedFile file;
+	private final long count;
+
+	public PositionIndex(Path path) throws IOException {
+		file = new MappedFile(path);
+		long size = file.size();
+		if (size < HEADER_BYTES || file.readLong(0) != MAGIC) {
+			file.close();
+			throw new IOException("Not a position index");
+		}
+		count = file.readLong(8);
+		if (size != HEADER_BYTES + count * POSTING_BYTES) {
+			file.close();
+			throw new IOException("Truncated position index");
+		}
+	}
+
+	public static long gameId(long posting) {
+		return posting >>> 16;
+	}
+
+	public static int ply(long posting) {
+		return (int)(posting & 0xFFFF);
+	}
+
+	static long posting(long gameId, int ply) {
+		return gameId << 16 | ply;
+	}
+
+	public long getPostingCount() {
+		return count;
+	}
+
+	public long count(long key) {
+		return lowerBound(key, true) - lowerBound(key, false);
+	}
+
+	public long[] find(ChessMatch match) {
+		return find(match.getPositionKey(), Integer.MAX_VALUE);
+	}
+
+	// Postings of the position, by game id and then ply; see gameId() and ply(). At most limit of them.
+	public long[] find(long key, int limit) {
+		long first = lowerBound(key, false);
+		long end = Math.min(lowerBound(key, true), first + limit);
+		long[] postings = new long[(int)(end - first)];
+		for (int i = 0; i < postings.length; i++) {
+			postings[i] = file.readLong(offset(first + i) + 8);
+		}
+		return postings;
+	}
+
+	// First posting whose key is above the given one when after is set, at or above it otherwise.
+	private long lowerBound(long key, boolean after) {
+		long low = 0;
+		long high = count;
+		while (low < high) {
+			long mid = (low + high) >>> 1;
+			long k = file.readLong(offset(mid));
+			if (k < key || (after && k == key)) {
+				low = mid + 1;
+			}
+			else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	private static long offset(long index) {
+		return HEADER_BYTES + index * POSTING_BYTES;
+	}
+
+	@Override
+	public void close() throws IOException {
+		file.close();
+	}
+}
@@ -0,0 +1,340 @@
+package chess.index;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import chess.ChessMatch;
+import chess.selfplay.GameFileReader;
+import chess.selfplay.GameRecord;
+
+/*
+ * Builds a PositionIndex from a game file. A reader hands batches of games to workers, which
+ * replay them and collect a posting for every position reached, ply 0 included. A worker sorts
+ * and spills its postings to a temporary run file whenever its buffer fills, and the runs are
+ * merged into the index at the end. A merge reads at most a fan-in of runs at once, sized so that
+ * their stream buffers fit in the workers' threads * runSize postings and capped to stay clear of
+ * the file descriptor limit; more runs than that are first merged in groups into longer runs, as
+ * many passes as it takes. So memory stays at threads * runSize postings whatever the size of the
+ * corpus. Game ids are the games' positions in the file, counting from 0.
+ */
+public class PositionIndexBuilder {
+
+	private static final int BATCH_GAMES = 256;
+	private static final int STREAM_BUFFER = 1 << 16;
+	private static final int MAX_FAN_IN = 256;
+	private static final Batch END = new Batch(-1, null);
+
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private int runSize = 1 << 20;
+	private Path tempDirectory;
+
+	private long games;
+	private long postings;
+
+	public void setThreads(int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("Threads must be at least 1");
+		}
+		this.threads = threads;
+	}
+
+	// Postings each worker sorts in memory before spilling them, 16 bytes each.
+	public void setRunSize(int runSize) {
+		if (runSize < 1) {
+			throw new IllegalArgumentException("Run size must be at least 1");
+		}
+		this.runSize = runSize;
+	}
+
+	// Where the sorted runs go; by default next to the index.
+	public void setTempDirectory(Path tempDirectory) {
+		this.tempDirectory = tempDirectory;
+	}
+
+	// Runs merged at once.
+	public int getFanIn() {
+		return (int)Math.max(2, Math.min(MAX_FAN_IN, (long)threads * runSize * 16 / STREAM_BUFFER));
+	}
+
+	public long getGames() {
+		return games;
+	}
+
+	public long getPostings() {
+		return postings;
+	}
+
+	public void build(Path gameFile, Path index) throws IOException, InterruptedException {
+		Path directory = (tempDirectory != null) ? tempDirectory : index.toAbsolutePath().getParent();
+		List<Path> runs = Collections.synchronizedList(new ArrayList<>());
+		BlockingQueue<Batch> batches = new ArrayBlockingQueue<>(threads * 2);
+		IOException[] failure = new IOException[1];
+
+		Thread[] workers = new Thread[threads];
+		for (int i = 0; i < threads; i++) {
+			workers[i] = new Thread(() -> {
+				try {
+					index(batches, directory, runs);
+				}
+				catch (IOException | RuntimeException e) {
+					synchronized (failure) {
+						if (failure[0] == null) {
+							failure[0] = (e instanceof IOException) ? (IOException)e : new IOException("Indexing failed", e);
+						}
+					}
+					// keep taking batches so the reader never blocks on a dead worker
+					drain(batches);
+				}
+			}, "index-worker-" + (i + 1));
+			workers[i].start();
+		}
+		try {
+			games = 0;
+			try (GameFileReader reader = new GameFileReader(gameFile)) {
+				List<GameRecord> batch = new ArrayList<>(BATCH_GAMES);
+				GameRecord game;
+				while ((game = reader.next()) != null) {
+					batch.add(game);
+					if (batch.size() == BATCH_GAMES) {
+						batches.put(new Batch(games, batch));
+						games += batch.size();
+						batch = new ArrayList<>(BATCH_GAMES);
+					}
+				}
+				if (!batch.isEmpty()) {
+					batches.put(new Batch(games, batch));
+					games += batch.size();
+				}
+			}
+			finally {
+				for (int i = 0; i < threads; i++) {
+					batches.put(END);
+				}
+				for (Thread worker : workers) {
+					worker.join();
+				}
+			}
+			if (failure[0] != null) {
+				throw failure[0];
+			}
+			// runs keeps every file made, for the cleanup; merged ones are deleted as soon as they are used
+			List<Path> pending = new ArrayList<>(runs);
+			int fanIn = getFanIn();
+			while (pending.size() > fanIn) {
+				List<Path> merged = new ArrayList<>();
+				for (int i = 0; i < pending.size(); i += fanIn) {
+					List<Path> group = pending.subList(i, Math.min(i + fanIn, pending.size()));
+					if (group.size() == 1) {
+						merged.add(group.get(0));
+						continue;
+					}
+					Path run = Files.createTempFile(directory, "postings", ".run");
+					runs.add(run);
+					merge(group, run, false);
+					for (Path used : group) {
+						Files.delete(used);
+					}
+					merged.add(run);
+				}
+				pending = merged;
+			}
+			postings = merge(pending, index, true);
+		}
+		finally {
+			for (Path run : runs) {
+				Files.deleteIfExists(run);
+			}
+		}
+	}
+
+	private void index(BlockingQueue<Batch> batches, Path directory, List<Path> runs) throws IOException {
+		long[] keys = new long[runSize];
+		long[] values = new long[runSize];
+		int size = 0;
+		try {
+			Batch batch;
+			while ((batch = batches.take()) != END) {
+				for (int g = 0; g < batch.games.size(); g++) {
+					GameRecord game = batch.games.get(g);
+					long id = batch.firstId + g;
+					ChessMatch match = (game.getStartFen() == null) ? new ChessMatch() : new ChessMatch(game.getStartFen());
+					int[] moves = game.getMoves();
+					for (int ply = 0; ply <= moves.length; ply++) {
+						if (ply > 0) {
+							match.makeMove(moves[ply - 1]);
+						}
+						if (size == runSize) {
+							runs.add(spill(keys, values, size, directory));
+							size = 0;
+						}
+						keys[size] = match.getPositionKey();
+						values[size] = PositionIndex.posting(id, ply);
+						size++;
+					}
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			throw new IOException("Interrupted while indexing", e);
+		}
+		if (size > 0) {
+			runs.add(spill(keys, values, size, directory));
+		}
+	}
+
+	private static void drain(BlockingQueue<Batch> batches) {
+		try {
+			while (batches.take() != END) {
+				// discard
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static Path spill(long[] keys, long[] values, int size, Path directory) throws IOException {
+		sort(keys, values, 0, size - 1);
+		Path run = Files.createTempFile(directory, "postings", ".run");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), STREAM_BUFFER))) {
+			out.writeLong(size);
+			for (int i = 0; i < size; i++) {
+				out.writeLong(keys[i]);
+				out.writeLong(values[i]);
+			}
+		}
+		return run;
+	}
+
+	// Quicksort of the pairs by key and then value, with insertion sort for short ranges.
+	private static void sort(long[] keys, long[] values, int low, int high) {
+		while (high - low > 16) {
+			int mid = (low + high) >>> 1;
+			long pivotKey = keys[mid];
+			long pivotValue = values[mid];
+			int i = low;
+			int j = high;
+			while (i <= j) {
+				while (compare(keys[i], values[i], pivotKey, pivotValue) < 0) {
+					i++;
+				}
+				while (compare(keys[j], values[j], pivotKey, pivotValue) > 0) {
+					j--;
+				}
+				if (i <= j) {
+					swap(keys, values, i++, j--);
+				}
+			}
+			// recurse into the smaller side to bound the stack depth
+			if (j - low < high - i) {
+				sort(keys, values, low, j);
+				low = i;
+			}
+			else {
+				sort(keys, values, i, high);
+				high = j;
+			}
+		}
+		for (int i = low + 1; i <= high; i++) {
+			for (int j = i; j > low && compare(keys[j], values[j], keys[j - 1], values[j - 1]) < 0; j--) {
+				swap(keys, values, j, j - 1);
+			}
+		}
+	}
+
+	private static int compare(long key1, long value1, long key2, long value2) {
+		int c = Long.compare(key1, key2);
+		return (c != 0) ? c : Long.compare(value1, value2);
+	}
+
+	private static void swap(long[] keys, long[] values, int i, int j) {
+		long key = keys[i];
+		keys[i] = keys[j];
+		keys[j] = key;
+		long value = values[i];
+		values[i] = values[j];
+		values[j] = value;
+	}
+
+	// Merges sorted runs into the index or, for an intermediate pass, into another run.
+	private static long merge(List<Path> runs, Path output, boolean index) throws IOException {
+		List<Run> open = new ArrayList<>();
+		PriorityQueue<Run> queue = new PriorityQueue<>((a, b) -> compare(a.key, a.value, b.key, b.value));
+		long total = 0;
+		try {
+			for (Path path : runs) {
+				Run run = new Run(path);
+				open.add(run);
+				total += run.remaining;
+				if (run.next()) {
+					queue.add(run);
+				}
+			}
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(output), STREAM_BUFFER))) {
+				if (index) {
+					out.writeLong(PositionIndex.MAGIC);
+				}
+				out.writeLong(total);
+				while (!queue.isEmpty()) {
+					Run run = queue.poll();
+					out.writeLong(run.key);
+					out.writeLong(run.value);
+					if (run.next()) {
+						queue.add(run);
+					}
+				}
+			}
+		}
+		finally {
+			for (Run run : open) {
+				run.in.close();
+			}
+		}
+		return total;
+	}
+
+	private static class Batch {
+
+		final long firstId;
+		final List<GameRecord> games;
+
+		Batch(long firstId, List<GameRecord> games) {
+			this.firstId = firstId;
+			this.games = games;
+		}
+	}
+
+	private static class Run {
+
+		final DataInputStream in;
+		long remaining;
+		long key;
+		long value;
+
+		Run(Path path) throws IOException {
+			in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), STREAM_BUFFER));
+			remaining = in.readLong();
+		}
+
+		boolean next() throws IOException {
+			if (remaining == 0) {
+				return false;
+			}
+			remaining--;
+			key = in.readLong();
+			value = in.readLong();
+			return true;
+		}
+	}
+}
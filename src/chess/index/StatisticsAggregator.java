@@ -0,0 +1,252 @@
+package chess.index;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import chess.ChessMatch;
+import chess.Color;
+import chess.selfplay.GameFileReader;
+import chess.selfplay.GameRecord;
+
+/*
+ * Counts, for every position and move played from it, the games and their results over a game
+ * file. Games are replayed with ChessMatch.makeMove alone, without legality checks or game
+ * state. Counts accumulate in an off-heap MoveCountTable sized by setMemoryBytes; when it fills
+ * it is spilled to disk as a sorted run, and the runs are merged, summing equal entries, into a
+ * file that OpeningStatistics reads. A merge reads at most a fan-in of runs at once, sized so
+ * that their stream buffers take an eighth of the memory setting; more runs than that are first
+ * merged in groups into longer runs, as many passes as it takes. Peak memory is thus the table
+ * plus an eighth, with a floor of two runs at a time for very small settings.
+ */
+public class StatisticsAggregator {
+
+	private static final int STREAM_BUFFER = 1 << 16;
+	private static final int MAX_FAN_IN = 1024;
+
+	private long memoryBytes = 64L << 20;
+	private int maxPly;
+	private Path tempDirectory;
+
+	private long games;
+	private long plies;
+	private int runs;
+	private long entries;
+
+	// Size of the off-heap table.
+	public void setMemoryBytes(long memoryBytes) {
+		if (memoryBytes < MoveCountTable.ENTRY_BYTES * 2) {
+			throw new IllegalArgumentException("Memory too small for the table");
+		}
+		this.memoryBytes = memoryBytes;
+	}
+
+	// Plies counted from the start of each game; 0 counts them all.
+	public void setMaxPly(int maxPly) {
+		this.maxPly = maxPly;
+	}
+
+	public void setTempDirectory(Path tempDirectory) {
+		this.tempDirectory = tempDirectory;
+	}
+
+	public long getGames() {
+		return games;
+	}
+
+	public long getPlies() {
+		return plies;
+	}
+
+	public int getRuns() {
+		return runs;
+	}
+
+	// Runs merged at once.
+	public int getFanIn() {
+		return (int)Math.max(2, Math.min(MAX_FAN_IN, memoryBytes / 8 / STREAM_BUFFER));
+	}
+
+	// Distinct (position, move) pairs in the output.
+	public long getEntries() {
+		return entries;
+	}
+
+	public void aggregate(Path gameFile, Path output) throws IOException {
+		Path directory = (tempDirectory != null) ? tempDirectory : output.toAbsolutePath().getParent();
+		List<Path> runFiles = new ArrayList<>();
+		// every run file made, for the cleanup; merged ones are deleted as soon as they are used
+		List<Path> temporary = new ArrayList<>();
+		MoveCountTable table = new MoveCountTable(memoryBytes);
+		games = 0;
+		plies = 0;
+		try {
+			try (GameFileReader reader = new GameFileReader(gameFile)) {
+				GameRecord game;
+				while ((game = reader.next()) != null) {
+					int result = (game.getWinner() == Color.WHITE) ? 0 : (game.getWinner() == Color.BLACK) ? 2 : 1;
+					ChessMatch match = (game.getStartFen() == null) ? new ChessMatch() : new ChessMatch(game.getStartFen());
+					int[] moves = game.getMoves();
+					int end = (maxPly > 0) ? Math.min(maxPly, moves.length) : moves.length;
+					for (int ply = 0; ply < end; ply++) {
+						long key = match.getPositionKey();
+						if (!table.add(key, moves[ply], result)) {
+							runFiles.add(spill(table, directory, temporary));
+							table.add(key, moves[ply], result);
+						}
+						match.makeMove(moves[ply]);
+					}
+					games++;
+					plies += end;
+				}
+			}
+			if (table.size() > 0 || runFiles.isEmpty()) {
+				runFiles.add(spill(table, directory, temporary));
+			}
+			runs = runFiles.size();
+			int fanIn = getFanIn();
+			while (runFiles.size() > fanIn) {
+				List<Path> merged = new ArrayList<>();
+				for (int i = 0; i < runFiles.size(); i += fanIn) {
+					List<Path> group = runFiles.subList(i, Math.min(i + fanIn, runFiles.size()));
+					if (group.size() == 1) {
+						merged.add(group.get(0));
+						continue;
+					}
+					Path run = createRun(directory, temporary);
+					merge(group, run, false);
+					for (Path used : group) {
+						Files.delete(used);
+					}
+					merged.add(run);
+				}
+				runFiles = merged;
+			}
+			entries = merge(runFiles, output, true);
+		}
+		finally {
+			for (Path run : temporary) {
+				Files.deleteIfExists(run);
+			}
+		}
+	}
+
+	private static Path createRun(Path directory, List<Path> temporary) throws IOException {
+		Path run = Files.createTempFile(directory, "statistics", ".run");
+		temporary.add(run);
+		return run;
+	}
+
+	private static Path spill(MoveCountTable table, Path directory, List<Path> temporary) throws IOException {
+		Path run = createRun(directory, temporary);
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), STREAM_BUFFER))) {
+			table.spill(out);
+		}
+		return run;
+	}
+
+	// Merges sorted runs, summing equal entries, into the statistics file or, for an intermediate
+	// pass, into another run.
+	private static long merge(List<Path> runFiles, Path output, boolean statistics) throws IOException {
+		List<Run> open = new ArrayList<>();
+		PriorityQueue<Run> queue = new PriorityQueue<>((a, b) -> {
+			int c = Long.compare(a.key, b.key);
+			return (c != 0) ? c : Integer.compare(a.move, b.move);
+		});
+		long written = 0;
+		try {
+			for (Path path : runFiles) {
+				Run run = new Run(path);
+				open.add(run);
+				if (run.next()) {
+					queue.add(run);
+				}
+			}
+			// the count goes in the header, so it is patched in once the merge is done
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(output), STREAM_BUFFER))) {
+				if (statistics) {
+					out.writeLong(OpeningStatistics.MAGIC);
+				}
+				out.writeLong(0);
+				long[] counts = new long[4];
+				while (!queue.isEmpty()) {
+					Run run = queue.poll();
+					long key = run.key;
+					int move = run.move;
+					for (int i = 0; i < 4; i++) {
+						counts[i] = run.counts[i];
+					}
+					if (run.next()) {
+						queue.add(run);
+					}
+					while (!queue.isEmpty() && queue.peek().key == key && queue.peek().move == move) {
+						Run same = queue.poll();
+						for (int i = 0; i < 4; i++) {
+							counts[i] += same.counts[i];
+						}
+						if (same.next()) {
+							queue.add(same);
+						}
+					}
+					out.writeLong(key);
+					if (statistics) {
+						out.writeLong(move);
+					}
+					else {
+						out.writeInt(move);
+					}
+					for (long count : counts) {
+						out.writeLong(count);
+					}
+					written++;
+				}
+			}
+		}
+		finally {
+			for (Run run : open) {
+				run.in.close();
+			}
+		}
+		try (FileChannel channel = FileChannel.open(output, StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.allocate(8).putLong(0, written), statistics ? 8 : 0);
+		}
+		return written;
+	}
+
+	private static class Run {
+
+		final DataInputStream in;
+		long remaining;
+		long key;
+		int move;
+		final long[] counts = new long[4];
+
+		Run(Path path) throws IOException {
+			in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), STREAM_BUFFER));
+			remaining = in.readLong();
+		}
+
+		boolean next() throws IOException {
+			if (remaining == 0) {
+				return false;
+			}
+			remaining--;
+			key = in.readLong();
+			move = in.readInt();
+			for (int i = 0; i < 4; i++) {
+				counts[i] = in.readLong();
+			}
+			return true;
+		}
+	}
+}
@@ -0,0 +1,26 @@
+package chess.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// A lookup in one of the per-match caches.
+@Name("chess.CacheProbe")
+@Label("Cache Probe")
+@Category({ "Chess", "Match" })
+public class CacheProbeEvent extends jdk.jfr.Event {
+
+	// Checked before creating an event, so that nothing is allocated on the hot path while the
+	// event is not recorded, whatever escape analysis makes of it.
+	public static final EventType TYPE = EventType.getEventType(CacheProbeEvent.class);
+
+	@Label("Match Id")
+	public long matchId;
+
+	@Label("Cache")
+	public String cache;
+
+	@Label("Hit")
+	public boolean hit;
+}
@@ -0,0 +1,30 @@
+package chess.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// Buffered output handed to the file system: game file chunks and batch analysis checkpoints.
+@Name("chess.FileFlush")
+@Label("File Flush")
+@Category({ "Chess", "I/O" })
+public class FileFlushEvent extends jdk.jfr.Event {
+
+	// Writers check it before creating the event of a flush.
+	public static final EventType TYPE = EventType.getEventType(FileFlushEvent.class);
+
+	@Label("Path")
+	public String path;
+
+	@Label("Bytes")
+	@Description("Bytes written by the flush")
+	@DataAmount
+	public long bytes;
+
+	@Label("Checkpoint")
+	@Description("Whether a checkpoint file was saved after the data")
+	public boolean checkpoint;
+}
@@ -0,0 +1,136 @@
+package chess.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Log-linear histogram of durations in nanoseconds, in the manner of HdrHistogram: each power
+ * of two is split into 16 linear sub-buckets, so any value is reported within about 6% over the
+ * whole range up to 2^63 ns, in a fixed 976 long buckets (about 7.8 KB per histogram).
+ * Recording is lock-free: the count and sum go to LongAdders and the bucket to an atomic array
+ * slot.
+ */
+public class LatencyHistogram implements LatencyHistogramMBean {
+
+	private static final int SUB_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+	private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_BUCKETS;
+
+	private final String name;
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	public LatencyHistogram(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void record(long nanos) {
+		if (nanos < 0) {
+			nanos = 0;
+		}
+		buckets.incrementAndGet(bucket(nanos));
+		count.increment();
+		sum.add(nanos);
+		max.accumulate(nanos);
+	}
+
+	// Values below 16 get a bucket each; above, the top four bits below the leading one pick the sub-bucket.
+	static int bucket(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int)value;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+		return (shift + 1) * SUB_BUCKETS + (int)((value >>> shift) & (SUB_BUCKETS - 1));
+	}
+
+	// Largest value that falls in the bucket.
+	static long highestValue(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int shift = bucket / SUB_BUCKETS - 1;
+		long sub = bucket % SUB_BUCKETS;
+		return ((SUB_BUCKETS + sub + 1) << shift) - 1;
+	}
+
+	@Override
+	public long getCount() {
+		return count.sum();
+	}
+
+	public long getTotalNanos() {
+		return sum.sum();
+	}
+
+	@Override
+	public double getMeanMicros() {
+		long n = count.sum();
+		return (n == 0) ? 0 : sum.sum() / 1e3 / n;
+	}
+
+	// Nanoseconds at or below which the given percentage of the recorded values fall.
+	public long percentile(double percentile) {
+		long[] snapshot = new long[BUCKETS];
+		long total = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			snapshot[i] = buckets.get(i);
+			total += snapshot[i];
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long)Math.ceil(percentile / 100 * total));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += snapshot[i];
+			if (seen >= rank) {
+				return Math.min(highestValue(i), max.get());
+			}
+		}
+		return max.get();
+	}
+
+	@Override
+	public double getP50Micros() {
+		return percentile(50) / 1e3;
+	}
+
+	@Override
+	public double getP99Micros() {
+		return percentile(99) / 1e3;
+	}
+
+	@Override
+	public double getP999Micros() {
+		return percentile(99.9) / 1e3;
+	}
+
+	@Override
+	public double getMaxMicros() {
+		return max.get() / 1e3;
+	}
+
+	// Not atomic with respect to concurrent recording; a value recorded meanwhile may be half counted.
+	@Override
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++) {
+			buckets.set(i, 0);
+		}
+		count.reset();
+		sum.reset();
+		max.reset();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%-24s count %10d  mean %9.2fus  p50 %9.2fus  p99 %9.2fus  p99.9 %9.2fus  max %10.2fus",
+				name, getCount(), getMeanMicros(), getP50Micros(), getP99Micros(), getP999Micros(), getMaxMicros());
+	}
+}
@@ -0,0 +1,18 @@
+package chess.metrics;
+
+public interface LatencyHistogramMBean {
+
+	long getCount();
+
+	double getMeanMicros();
+
+	double getP50Micros();
+
+	double getP99Micros();
+
+	double getP999Micros();
+
+	double getMaxMicros();
+
+	void reset();
+}
@@ -0,0 +1,109 @@
+package chess.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/*
+ * Latency histograms and counters for the hot paths of ChessMatch and the engine. Recording is
+ * switched on with -Dchess.metrics=true. The switch is a static final constant, so with it off
+ * the JIT removes the guarded timing code and the instrumented paths cost nothing. Call sites
+ * follow one pattern:
+ *
+ *   long start = Metrics.ENABLED ? System.nanoTime() : 0;
+ *   ...
+ *   if (Metrics.ENABLED) {
+ *       Metrics.MOVE_GENERATION.record(System.nanoTime() - start);
+ *   }
+ *
+ * registerMBeans() publishes every histogram and this registry under the "chess" JMX domain;
+ * dump() gives the same figures as text.
+ */
+public final class Metrics implements MetricsMBean {
+
+	public static final boolean ENABLED = Boolean.getBoolean("chess.metrics");
+
+	// a move from performChessMove or tryMove, validation and game state included
+	public static final LatencyHistogram MOVE = new LatencyHistogram("match.move");
+	public static final LatencyHistogram MOVE_GENERATION = new LatencyHistogram("match.generateMoves");
+	// whether the side to move is in check after a move
+	public static final LatencyHistogram CHECK_TEST = new LatencyHistogram("match.testCheck");
+	// mate, stalemate and draw detection after a move
+	public static final LatencyHistogram GAME_STATE_TEST = new LatencyHistogram("match.testGameState");
+	public static final LatencyHistogram SEARCH = new LatencyHistogram("engine.search");
+	public static final LongAdder SEARCH_NODES = new LongAdder();
+
+	private static final LatencyHistogram[] HISTOGRAMS = { MOVE, MOVE_GENERATION, CHECK_TEST, GAME_STATE_TEST, SEARCH };
+	private static final Metrics INSTANCE = new Metrics();
+
+	private Metrics() {
+	}
+
+	public static LatencyHistogram[] getHistograms() {
+		return HISTOGRAMS.clone();
+	}
+
+	// Registers the MBeans with the platform server; calling it again does nothing.
+	public static synchronized void registerMBeans() {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			register(server, INSTANCE, new ObjectName("chess:type=Metrics"));
+			for (LatencyHistogram histogram : HISTOGRAMS) {
+				register(server, histogram, new ObjectName("chess:type=Latency,name=" + histogram.getName()));
+			}
+		}
+		catch (JMException e) {
+			throw new IllegalStateException("Cannot register the metrics MBeans", e);
+		}
+	}
+
+	private static void register(MBeanServer server, Object bean, ObjectName name) throws JMException {
+		try {
+			server.registerMBean(bean, name);
+		}
+		catch (InstanceAlreadyExistsException e) {
+			// already registered
+		}
+	}
+
+	public static String dumpText() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("metrics ").append(ENABLED ? "enabled" : "disabled (-Dchess.metrics=true)").append('\n');
+		for (LatencyHistogram histogram : HISTOGRAMS) {
+			sb.append(histogram).append('\n');
+		}
+		sb.append(String.format("%-24s %d%n", "engine.nodes", SEARCH_NODES.sum()));
+		return sb.toString();
+	}
+
+	public static void resetAll() {
+		for (LatencyHistogram histogram : HISTOGRAMS) {
+			histogram.reset();
+		}
+		SEARCH_NODES.reset();
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return ENABLED;
+	}
+
+	@Override
+	public long getSearchNodes() {
+		return SEARCH_NODES.sum();
+	}
+
+	@Override
+	public String dump() {
+		return dumpText();
+	}
+
+	@Override
+	public void reset() {
+		resetAll();
+	}
+}
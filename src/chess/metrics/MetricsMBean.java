@@ -0,0 +1,12 @@
+package chess.metrics;
+
+public interface MetricsMBean {
+
+	boolean isEnabled();
+
+	long getSearchNodes();
+
+	String dump();
+
+	void reset();
+}
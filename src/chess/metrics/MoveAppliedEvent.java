@@ -0,0 +1,41 @@
+package chess.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+// A move offered to ChessMatch.performChessMove() or tryMove(), from validation to the new game state.
+@Name("chess.MoveApplied")
+@Label("Move Applied")
+@Category({ "Chess", "Match" })
+public class MoveAppliedEvent extends jdk.jfr.Event {
+
+	// Checked before creating an event, so that nothing is allocated on the hot path while the
+	// event is not recorded, whatever escape analysis makes of it.
+	public static final EventType TYPE = EventType.getEventType(MoveAppliedEvent.class);
+
+	@Label("Match Id")
+	public long matchId;
+
+	@Label("Move")
+	@Description("Coordinate notation, e.g. e7e8q")
+	public String move;
+
+	@Label("Status")
+	public String status;
+
+	@Label("Validation Time")
+	@Timespan(Timespan.NANOSECONDS)
+	public long validationNanos;
+
+	@Label("Mate Test Time")
+	@Description("Checkmate, stalemate and draw detection after the move")
+	@Timespan(Timespan.NANOSECONDS)
+	public long mateTestNanos;
+
+	@Label("Game State")
+	public String gameState;
+}
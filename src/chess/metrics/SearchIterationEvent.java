@@ -0,0 +1,47 @@
+package chess.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// One depth of iterative deepening, all multi-PV lines included.
+@Name("chess.SearchIteration")
+@Label("Search Iteration")
+@Category({ "Chess", "Engine" })
+public class SearchIterationEvent extends jdk.jfr.Event {
+
+	// Search checks it before creating the event of an iteration.
+	public static final EventType TYPE = EventType.getEventType(SearchIterationEvent.class);
+
+	@Label("Depth")
+	public int depth;
+
+	@Label("Lines")
+	public int lines;
+
+	@Label("Best Move")
+	public String bestMove;
+
+	@Label("Score")
+	@Description("Centipawns from the side to move")
+	public int score;
+
+	@Label("Nodes")
+	@Description("Nodes of the whole search so far")
+	public long nodes;
+
+	@Label("Nodes per Second")
+	public long nodesPerSecond;
+
+	@Label("Hash Probes")
+	@Description("Transposition table probes during the iteration")
+	public long hashProbes;
+
+	@Label("Hash Hits")
+	public long hashHits;
+
+	@Label("Stopped")
+	public boolean stopped;
+}
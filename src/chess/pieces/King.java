@@ -1,10 +1,13 @@
 package chess.pieces;
 
 import boardgame.Board;
-import boardgame.Position;
+import boardgame.Piece;
 import chess.ChessMatch;
 import chess.ChessPiece;
 import chess.Color;
+import chess.Move;
+import chess.MoveList;
+import chess.PieceType;
 
 public class King extends ChessPiece {
 
@@ -15,98 +18,58 @@ public class King extends ChessPiece {
 		this.chessMatch = chessMatch;
 	}
 
+	@Override
+	public PieceType getType() {
+		return PieceType.KING;
+	}
+
 	@Override
 	public String toString() {
 		return "K";
 	}
 
-	private boolean canMove(Position position) {
-		ChessPiece p = (ChessPiece) getBoard().piece(position);
-		return p == null || p.getColor() != getColor();
-	}
-	
-	private boolean testeRookCastlin(Position position) {
-		ChessPiece p = (ChessPiece)getBoard().piece(position);
-		return p != null && p instanceof Rook && p.getColor() == getColor() && p.getMoveCount() == 0;
+	private boolean testeRookCastlin(int square) {
+		Piece p = getBoard().pieceAt(square);
+		return p instanceof Rook && ((ChessPiece)p).getColor() == getColor();
 	}
 
 	@Override
-	public boolean[][] possibleMoves() {
-		boolean[][] mat = new boolean[getBoard().getRows()][getBoard().getColumns()];
-
-		Position p = new Position(0, 0);
-
-		// above
-		p.setValues(position.getRow() - 1, position.getColumn());
-		if (getBoard().positionExists(p) && canMove(p)) {
-			mat[p.getRow()][p.getColumn()] = true;
-		}
-
-		// below
-		p.setValues(position.getRow() + 1, position.getColumn());
-		if (getBoard().positionExists(p) && canMove(p)) {
-			mat[p.getRow()][p.getColumn()] = true;
-		}
+	public void generateMoves(MoveList moves, int kinds) {
+		Board board = getBoard();
+		int w = board.getWidth();
 
-		// left
-		p.setValues(position.getRow(), position.getColumn() - 1);
-		if (getBoard().positionExists(p) && canMove(p)) {
-			mat[p.getRow()][p.getColumn()] = true;
-		}
-
-		// right
-		p.setValues(position.getRow(), position.getColumn() + 1);
-		if (getBoard().positionExists(p) && canMove(p)) {
-			mat[p.getRow()][p.getColumn()] = true;
-		}
-
-		// nw
-		p.setValues(position.getRow() - 1, position.getColumn() - 1);
-		if (getBoard().positionExists(p) && canMove(p)) {
-			mat[p.getRow()][p.getColumn()] = true;
-		}
+		// above, below, left, right
+		step(moves, kinds, -w);
+		step(moves, kinds, w);
+		step(moves, kinds, -1);
+		step(moves, kinds, 1);
 
-		// ne
-		p.setValues(position.getRow() - 1, position.getColumn() + 1);
-		if (getBoard().positionExists(p) && canMove(p)) {
-			mat[p.getRow()][p.getColumn()] = true;
-		}
-
-		// sw
-		p.setValues(position.getRow() + 1, position.getColumn() - 1);
-		if (getBoard().positionExists(p) && canMove(p)) {
-			mat[p.getRow()][p.getColumn()] = true;
-		}
-
-		// SE
-		p.setValues(position.getRow() + 1, position.getColumn() + 1);
-		if (getBoard().positionExists(p) && canMove(p)) {
-			mat[p.getRow()][p.getColumn()] = true;
-		}
+		// nw, ne, sw, se
+		step(moves, kinds, -w - 1);
+		step(moves, kinds, -w + 1);
+		step(moves, kinds, w - 1);
+		step(moves, kinds, w + 1);
 		
-		// #special move castling 
-		if (getMoveCount() == 0 && !chessMatch.getCheck()) {
+		// #special move castling: the king may not start in or pass through check,
+		// landing in check is left to the legality test like any other king move
+		Color opponent = (getColor() == Color.WHITE) ? Color.BLACK : Color.WHITE;
+		if ((kinds & QUIET_MOVES) != 0 && (chessMatch.canCastle(getColor(), true) || chessMatch.canCastle(getColor(), false))
+				&& !chessMatch.isSquareAttacked(toSquare(square), opponent)) {
 			// #special move castling King side rook
-			Position posT1 = new Position(position.getRow(), position.getColumn() + 3);
-			if (testeRookCastlin(posT1)) {
-				Position p1 = new Position(position.getRow(), position.getColumn() + 1);
-				Position p2 = new Position(position.getRow(), position.getColumn() + 2);
-				if (getBoard().piece(p1) == null && (getBoard().piece(p2) == null)) {
-					mat[position.getRow()][position.getColumn() + 2] = true;
+			if (chessMatch.canCastle(getColor(), true) && testeRookCastlin(square + 3)) {
+				if (board.pieceAt(square + 1) == null && board.pieceAt(square + 2) == null
+						&& !chessMatch.isSquareAttacked(toSquare(square + 1), opponent)) {
+					addMove(moves, square + 2, Move.KING_CASTLE);
 				}
 			}
 			
 			// #special move castling Queenside rook
-			Position posT2 = new Position(position.getRow(), position.getColumn() - 4);
-			if (testeRookCastlin(posT2)) {
-				Position p1 = new Position(position.getRow(), position.getColumn() - 1);
-				Position p2 = new Position(position.getRow(), position.getColumn() - 2);
-				Position p3 = new Position(position.getRow(), position.getColumn() - 3);
-				if (getBoard().piece(p1) == null && (getBoard().piece(p2) == null && getBoard().piece(p3) == null)) {
-					mat[position.getRow()][position.getColumn() - 2] = true;
+			if (chessMatch.canCastle(getColor(), false) && testeRookCastlin(square - 4)) {
+				if (board.pieceAt(square - 1) == null && board.pieceAt(square - 2) == null && board.pieceAt(square - 3) == null
+						&& !chessMatch.isSquareAttacked(toSquare(square - 1), opponent)) {
+					addMove(moves, square - 2, Move.QUEEN_CASTLE);
 				}
 			}
 		}
-		return mat;
 	}
-}
\ No newline at end of file
+}
@@ -1,10 +1,12 @@
 package chess.pieces;
 
 import boardgame.Board;
-import boardgame.Position;
 import chess.ChessMatch;
 import chess.ChessPiece;
 import chess.Color;
+import chess.Move;
+import chess.MoveList;
+import chess.PieceType;
 
 public class Pawn extends ChessPiece {
 
@@ -16,75 +18,65 @@ public class Pawn extends ChessPiece {
 	}
 
 	@Override
-	public boolean[][] possibleMoves() {
-		boolean[][] mat = new boolean[getBoard().getRows()][getBoard().getColumns()];
+	public PieceType getType() {
+		return PieceType.PAWN;
+	}
 
-		Position p = new Position(0, 0);
+	@Override
+	public void generateMoves(MoveList moves, int kinds) {
+		Board board = getBoard();
+		boolean white = getColor() == Color.WHITE;
+		int forward = white ? -board.getWidth() : board.getWidth();
+		int row = board.rowOf(square);
+		int startRow = white ? board.getRows() - 2 : 1;
+		boolean promoting = row == (white ? 1 : board.getRows() - 2);
 
-		if (getColor() == Color.WHITE) {
-			p.setValues(position.getRow() - 1, position.getColumn());
-			if (getBoard().positionExists(p) && !getBoard().thereIsAPiece(p)) {
-				mat[p.getRow()][p.getColumn()] = true;
-			}
-			p.setValues(position.getRow() - 2, position.getColumn());
-			Position p2 = new Position(position.getRow() - 1, position.getColumn());
-			if (getBoard().positionExists(p) && !getBoard().thereIsAPiece(p) && getBoard().positionExists(p2) && !getBoard().thereIsAPiece(p2) && getMoveCount() == 0) {
-				mat[p.getRow()][p.getColumn()] = true;
-			}
-			p.setValues(position.getRow() - 1, position.getColumn() - 1);
-			if (getBoard().positionExists(p) && isThereOpponentPiece(p)) {
-				mat[p.getRow()][p.getColumn()] = true;
-			}
-			p.setValues(position.getRow() - 1, position.getColumn() + 1);
-			if (getBoard().positionExists(p) && isThereOpponentPiece(p)) {
-				mat[p.getRow()][p.getColumn()] = true;
+		boolean quiet = (kinds & QUIET_MOVES) != 0;
+		boolean noisy = (kinds & NOISY_MOVES) != 0;
+
+		// promotions count as noisy moves even without a capture
+		int sq = square + forward;
+		if (board.pieceAt(sq) == null) {
+			if (promoting ? noisy : quiet) {
+				addPawnMove(moves, sq, promoting, Move.QUIET);
 			}
-			
-			// #special Move en passant white
-			if (position.getRow() == 3) {
-				Position left = new Position(position.getRow(), position.getColumn() - 1);
-				if (getBoard().positionExists(left) && isThereOpponentPiece(left) && getBoard().piece(left) == chessMatch.getEnPassantVulnerable()) {
-					mat[left.getRow() - 1][left.getColumn()] = true;
-				}
-				Position right = new Position(position.getRow(), position.getColumn() + 1);
-				if (getBoard().positionExists(right) && isThereOpponentPiece(right) && getBoard().piece(right) == chessMatch.getEnPassantVulnerable()) {
-					mat[right.getRow() - 1][right.getColumn()] = true;
-				}
+			if (quiet && row == startRow && board.pieceAt(sq + forward) == null) {
+				addMove(moves, sq + forward, Move.DOUBLE_PAWN_PUSH);
 			}
-			
 		}
-		else {
-			p.setValues(position.getRow() + 1, position.getColumn());
-			if (getBoard().positionExists(p) && !getBoard().thereIsAPiece(p)) {
-				mat[p.getRow()][p.getColumn()] = true;
-			}
-			p.setValues(position.getRow() + 2, position.getColumn());
-			Position p2 = new Position(position.getRow() + 1, position.getColumn());
-			if (getBoard().positionExists(p) && !getBoard().thereIsAPiece(p) && getBoard().positionExists(p2) && !getBoard().thereIsAPiece(p2) && getMoveCount() == 0) {
-				mat[p.getRow()][p.getColumn()] = true;
-			}
-			p.setValues(position.getRow() + 1, position.getColumn() - 1);
-			if (getBoard().positionExists(p) && isThereOpponentPiece(p)) {
-				mat[p.getRow()][p.getColumn()] = true;
-			}
-			p.setValues(position.getRow() + 1, position.getColumn() + 1);
-			if (getBoard().positionExists(p) && isThereOpponentPiece(p)) {
-				mat[p.getRow()][p.getColumn()] = true;
+		if (!noisy) {
+			return;
+		}
+		if (isOpponent(board.pieceAt(sq - 1))) {
+			addPawnMove(moves, sq - 1, promoting, Move.CAPTURE);
+		}
+		if (isOpponent(board.pieceAt(sq + 1))) {
+			addPawnMove(moves, sq + 1, promoting, Move.CAPTURE);
+		}
+		
+		// #special Move en passant
+		ChessPiece vulnerable = chessMatch.getEnPassantVulnerable();
+		if (vulnerable != null && vulnerable.getColor() != getColor()) {
+			if (board.pieceAt(square - 1) == vulnerable) {
+				addMove(moves, sq - 1, Move.EN_PASSANT);
 			}
-			
-			// #special Move en passant black
-			if (position.getRow() == 4) {
-				Position left = new Position(position.getRow(), position.getColumn() - 1);
-				if (getBoard().positionExists(left) && isThereOpponentPiece(left) && getBoard().piece(left) == chessMatch.getEnPassantVulnerable()) {
-					mat[left.getRow() + 1][left.getColumn()] = true;
-				}
-				Position right = new Position(position.getRow(), position.getColumn() + 1);
-				if (getBoard().positionExists(right) && isThereOpponentPiece(right) && getBoard().piece(right) == chessMatch.getEnPassantVulnerable()) {
-					mat[right.getRow() + 1][right.getColumn()] = true;
-				}
+			if (board.pieceAt(square + 1) == vulnerable) {
+				addMove(moves, sq + 1, Move.EN_PASSANT);
 			}
+		}
 	}
-		return mat;
+	
+	// #special Move promotion: one move per piece the pawn can become
+	private void addPawnMove(MoveList moves, int target, boolean promoting, int flags) {
+		if (!promoting) {
+			addMove(moves, target, flags);
+			return;
+		}
+		int promotion = flags | Move.PROMOTION;
+		addMove(moves, target, promotion | 3);
+		addMove(moves, target, promotion);
+		addMove(moves, target, promotion | 2);
+		addMove(moves, target, promotion | 1);
 	}
 	
 	@Override
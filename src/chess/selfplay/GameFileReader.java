@@ -0,0 +1,71 @@
+package chess.selfplay;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import chess.Color;
+import chess.GameState;
+
+// Reads the games written by GameFileWriter in file order.
+public class GameFileReader implements Closeable {
+
+	private static final GameState[] STATES = GameState.values();
+
+	private final DataInputStream in;
+	private final String[] startPositions;
+
+	public GameFileReader(Path path) throws IOException {
+		in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16));
+		if (in.readInt() != GameFileWriter.MAGIC) {
+			in.close();
+			throw new IOException("Not a game file");
+		}
+		int version = in.readInt();
+		if (version != GameFileWriter.VERSION) {
+			in.close();
+			throw new IOException("Unsupported game file version " + version);
+		}
+		startPositions = new String[in.readInt()];
+		for (int i = 0; i < startPositions.length; i++) {
+			byte[] fen = new byte[in.readUnsignedShort()];
+			in.readFully(fen);
+			startPositions[i] = new String(fen, StandardCharsets.UTF_8);
+		}
+	}
+
+	// The next game, or null at the end of the file.
+	public GameRecord next() throws IOException {
+		int info = in.read();
+		if (info < 0) {
+			return null;
+		}
+		try {
+			int start = in.readShort();
+			int plies = in.readUnsignedShort();
+			int[] moves = new int[plies];
+			for (int i = 0; i < plies; i++) {
+				moves[i] = in.readUnsignedShort();
+			}
+			if ((info & 15) >= STATES.length || start >= startPositions.length) {
+				throw new IOException("Corrupt game record");
+			}
+			int result = info >> 4;
+			Color winner = (result == 1) ? Color.WHITE : (result == 2) ? Color.BLACK : null;
+			return new GameRecord((start < 0) ? null : startPositions[start], STATES[info & 15], winner, moves);
+		}
+		catch (EOFException e) {
+			throw new IOException("Truncated game record", e);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+}
@@ -0,0 +1,123 @@
+package chess.selfplay;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import chess.Color;
+import chess.GameState;
+import chess.metrics.FileFlushEvent;
+
+/*
+ * Binary game file, big-endian:
+ *   header  int magic "CGAM", int version, int start position count, then each start FEN as
+ *           a short length and UTF-8 bytes
+ *   game    byte termination (GameState ordinal) | winner << 4 (0 none, 1 white, 2 black),
+ *           short start position index (-1 for the initial setup), short ply count,
+ *           then one short per move (the Move encoding)
+ * Games are appended in whole chunks, so threads can share a writer through their own Chunk.
+ */
+public class GameFileWriter implements Closeable {
+
+	static final int MAGIC = 0x4347414D;
+	static final int VERSION = 1;
+	static final int MAX_PLIES = 0xFFFF;
+
+	private final Path path;
+	private final FileChannel channel;
+	private long games;
+
+	public GameFileWriter(Path path, List<String> startPositions) throws IOException {
+		if (startPositions.size() > Short.MAX_VALUE) {
+			throw new IllegalArgumentException("Too many start positions");
+		}
+		this.path = path;
+		channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		int size = 12;
+		byte[][] fens = new byte[startPositions.size()][];
+		for (int i = 0; i < fens.length; i++) {
+			fens[i] = startPositions.get(i).getBytes(StandardCharsets.UTF_8);
+			size += 2 + fens[i].length;
+		}
+		ByteBuffer header = ByteBuffer.allocate(size);
+		header.putInt(MAGIC).putInt(VERSION).putInt(fens.length);
+		for (byte[] fen : fens) {
+			header.putShort((short)fen.length).put(fen);
+		}
+		header.flip();
+		writeFully(header);
+	}
+
+	public synchronized long getGames() {
+		return games;
+	}
+
+	private synchronized void write(ByteBuffer buffer, int count) throws IOException {
+		FileFlushEvent event = FileFlushEvent.TYPE.isEnabled() ? new FileFlushEvent() : null;
+		if (event != null) {
+			event.begin();
+		}
+		buffer.flip();
+		int bytes = buffer.remaining();
+		writeFully(buffer);
+		buffer.clear();
+		games += count;
+		if (event != null && event.shouldCommit()) {
+			event.path = path.toString();
+			event.bytes = bytes;
+			event.commit();
+		}
+	}
+
+	private void writeFully(ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		channel.close();
+	}
+
+	// Per-thread buffer of encoded games, written to the file when full and on flush().
+	public class Chunk {
+
+		private final ByteBuffer buffer;
+		private int count;
+
+		public Chunk(int capacity) {
+			buffer = ByteBuffer.allocate(Math.max(capacity, 5 + 2 * MAX_PLIES));
+		}
+
+		// moves[0..plies) are the game; startIndex is -1 for the initial setup.
+		public void add(int startIndex, GameState termination, Color winner, int[] moves, int plies) throws IOException {
+			if (plies > MAX_PLIES) {
+				throw new IllegalArgumentException("Game too long: " + plies + " plies");
+			}
+			if (buffer.remaining() < 5 + 2 * plies) {
+				flush();
+			}
+			int result = (winner == null) ? 0 : (winner == Color.WHITE) ? 1 : 2;
+			buffer.put((byte)(termination.ordinal() | result << 4));
+			buffer.putShort((short)startIndex);
+			buffer.putShort((short)plies);
+			for (int i = 0; i < plies; i++) {
+				buffer.putShort((short)moves[i]);
+			}
+			count++;
+		}
+
+		public void flush() throws IOException {
+			if (buffer.position() > 0) {
+				write(buffer, count);
+				count = 0;
+			}
+		}
+	}
+}
@@ -0,0 +1,60 @@
+package chess.selfplay;
+
+import chess.ChessException;
+import chess.ChessMatch;
+import chess.Color;
+import chess.GameState;
+import chess.Move;
+
+public class GameRecord {
+
+	private final String startFen;
+	private final GameState termination;
+	private final Color winner;
+	private final int[] moves;
+
+	public GameRecord(String startFen, GameState termination, Color winner, int[] moves) {
+		this.startFen = startFen;
+		this.termination = termination;
+		this.winner = winner;
+		this.moves = moves;
+	}
+
+	// Null when the game started from the initial setup.
+	public String getStartFen() {
+		return startFen;
+	}
+
+	// How the game ended; IN_PROGRESS when it was cut off at the ply limit.
+	public GameState getTermination() {
+		return termination;
+	}
+
+	// Null for a draw or an unfinished game.
+	public Color getWinner() {
+		return winner;
+	}
+
+	public int[] getMoves() {
+		return moves.clone();
+	}
+
+	public int getPlies() {
+		return moves.length;
+	}
+
+	// Plays the game again on a new match, checking every move against the rules.
+	public ChessMatch replay() {
+		ChessMatch match = (startFen == null) ? new ChessMatch() : new ChessMatch(startFen);
+		int applied = match.applyMoves(moves);
+		if (applied < moves.length) {
+			throw new ChessException("Illegal move " + Move.toString(moves[applied]) + " at ply " + applied);
+		}
+		return match;
+	}
+
+	@Override
+	public String toString() {
+		return termination + (winner == null ? "" : " " + winner) + " after " + moves.length + " plies";
+	}
+}
@@ -0,0 +1,297 @@
+package chess.selfplay;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import chess.ChessMatch;
+import chess.ChessPiece;
+import chess.Color;
+import chess.GameState;
+import chess.Move;
+import chess.MoveList;
+import chess.engine.ClassicalEvaluator;
+import chess.engine.Search;
+import chess.engine.StaticExchange;
+import chess.engine.TranspositionTable;
+
+/*
+ * Plays games against itself on every core and writes them to a game file. Each game starts
+ * from the initial setup or from a random one of the start positions and ends on mate,
+ * stalemate, threefold repetition, the fifty-move rule, insufficient material or the ply limit.
+ * Moves are chosen uniformly at random, at random weighted towards captures and promotions, or
+ * by a shallow search after a few random plies. Game n always gets the same random stream, so
+ * a run is reproducible for a given seed whatever the thread count; only the order of the games
+ * in the file varies.
+ */
+public class SelfPlay {
+
+	public enum Policy {
+		RANDOM,
+		WEIGHTED,
+		SEARCH;
+	}
+
+	private static final int CHUNK_BYTES = 1 << 18;
+
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private Policy policy = Policy.RANDOM;
+	private int searchDepth = 2;
+	private int randomPlies = 8;
+	private int maxPlies = 1000;
+	private long seed = 1;
+	private List<String> startPositions = Collections.emptyList();
+
+	private final AtomicLong nextGame = new AtomicLong();
+	private final AtomicLong plies = new AtomicLong();
+	private final long[] terminations = new long[GameState.values().length];
+	private long games;
+	private long elapsedNanos;
+
+	public void setThreads(int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("Threads must be at least 1");
+		}
+		this.threads = threads;
+	}
+
+	public void setPolicy(Policy policy) {
+		this.policy = policy;
+	}
+
+	public void setSearchDepth(int searchDepth) {
+		if (searchDepth < 1) {
+			throw new IllegalArgumentException("Search depth must be at least 1");
+		}
+		this.searchDepth = searchDepth;
+	}
+
+	// Plies played at random before the search policy takes over, so its games differ.
+	public void setRandomPlies(int randomPlies) {
+		this.randomPlies = randomPlies;
+	}
+
+	// Games still going after this many plies are stored as unfinished.
+	public void setMaxPlies(int maxPlies) {
+		if (maxPlies < 1 || maxPlies > GameFileWriter.MAX_PLIES) {
+			throw new IllegalArgumentException("Max plies must be between 1 and " + GameFileWriter.MAX_PLIES);
+		}
+		this.maxPlies = maxPlies;
+	}
+
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	// FEN positions to start from, chosen at random per game; empty for the initial setup.
+	public void setStartPositions(List<String> startPositions) {
+		for (String fen : startPositions) {
+			new ChessMatch(fen);
+		}
+		this.startPositions = new ArrayList<>(startPositions);
+	}
+
+	public long getGames() {
+		return games;
+	}
+
+	public long getPlies() {
+		return plies.get();
+	}
+
+	// Games that ended in the given state; IN_PROGRESS counts the ones cut off at the ply limit.
+	public synchronized long getGames(GameState termination) {
+		return terminations[termination.ordinal()];
+	}
+
+	public double getGamesPerSecond() {
+		return (elapsedNanos == 0) ? 0 : games * 1e9 / elapsedNanos;
+	}
+
+	public void run(Path output, long count) throws IOException, InterruptedException {
+		nextGame.set(0);
+		plies.set(0);
+		synchronized (this) {
+			Arrays.fill(terminations, 0);
+		}
+		long start = System.nanoTime();
+		try (GameFileWriter writer = new GameFileWriter(output, startPositions)) {
+			Thread[] workers = new Thread[threads];
+			Throwable[] failure = new Throwable[1];
+			for (int i = 0; i < threads; i++) {
+				workers[i] = new Thread(() -> {
+					try {
+						play(writer, count);
+					}
+					catch (IOException | RuntimeException e) {
+						synchronized (failure) {
+							if (failure[0] == null) {
+								failure[0] = e;
+							}
+						}
+						// let the other workers run out of games
+						nextGame.set(count);
+					}
+				}, "self-play-" + (i + 1));
+				workers[i].start();
+			}
+			for (Thread worker : workers) {
+				worker.join();
+			}
+			games = writer.getGames();
+			if (failure[0] instanceof IOException) {
+				throw (IOException)failure[0];
+			}
+			if (failure[0] != null) {
+				throw (RuntimeException)failure[0];
+			}
+		}
+		finally {
+			elapsedNanos = System.nanoTime() - start;
+		}
+	}
+
+	private void play(GameFileWriter writer, long count) throws IOException {
+		GameFileWriter.Chunk chunk = writer.new Chunk(CHUNK_BYTES);
+		MoveList moves = new MoveList();
+		int[] line = new int[maxPlies];
+		int[] weights = new int[256];
+		long[] counts = new long[terminations.length];
+		long played = 0;
+		Search search = (policy == Policy.SEARCH) ? newSearch() : null;
+		// one match per thread, reset for every game
+		ChessMatch match = new ChessMatch();
+		long game;
+		while ((game = nextGame.getAndIncrement()) < count) {
+			SplittableRandom random = new SplittableRandom(seed * 0x9E3779B97F4A7C15L + game);
+			int startIndex = startPositions.isEmpty() ? -1 : random.nextInt(startPositions.size());
+			if (startIndex < 0) {
+				match.reset();
+			}
+			else {
+				match.reset(startPositions.get(startIndex));
+			}
+			GameState state = GameState.IN_PROGRESS;
+			int ply = 0;
+			while (ply < maxPlies) {
+				// a draw by rule is only final when the side to move is not mated or stalemated,
+				// so the legal moves are generated just for the rare position that is one
+				state = match.testGameState(true);
+				if (state != GameState.IN_PROGRESS) {
+					moves.clear();
+					match.generateLegalMoves(moves);
+					state = match.testGameState(!moves.isEmpty());
+					break;
+				}
+				int move = chooseMove(match, moves, weights, random, search, ply);
+				if (move == Move.NONE) {
+					state = match.testGameState(false);
+					break;
+				}
+				line[ply++] = move;
+			}
+			Color winner = (state == GameState.CHECKMATE) ? opponent(match.getCurrentPlayer()) : null;
+			chunk.add(startIndex, state, winner, line, ply);
+			counts[state.ordinal()]++;
+			played += ply;
+		}
+		chunk.flush();
+		plies.addAndGet(played);
+		synchronized (this) {
+			for (int i = 0; i < counts.length; i++) {
+				terminations[i] += counts[i];
+			}
+		}
+	}
+
+	private Search newSearch() {
+		return new Search(new ClassicalEvaluator(), new TranspositionTable(1));
+	}
+
+	// Plays and returns a legal move, or returns Move.NONE when there is none.
+	private int chooseMove(ChessMatch match, MoveList moves, int[] weights, SplittableRandom random, Search search, int ply) {
+		if (policy == Policy.WEIGHTED) {
+			return playWeighted(match, moves, weights, random);
+		}
+		if (policy == Policy.SEARCH && ply >= randomPlies) {
+			int move = search.search(match, searchDepth).getMove();
+			if (move != Move.NONE) {
+				match.makeMove(move);
+			}
+			return move;
+		}
+		return playRandom(match, moves, random);
+	}
+
+	// Tries pseudo-legal moves in random order until one is legal, which picks uniformly among
+	// the legal moves while usually making just one.
+	private int playRandom(ChessMatch match, MoveList moves, SplittableRandom random) {
+		moves.clear();
+		match.generateMoves(moves);
+		int size = moves.size();
+		while (size > 0) {
+			int index = random.nextInt(size);
+			int move = moves.get(index);
+			match.makeMove(move);
+			if (match.isLastMoveLegal()) {
+				return move;
+			}
+			match.undoMove();
+			moves.set(index, moves.get(--size));
+		}
+		return Move.NONE;
+	}
+
+	// Quiet moves weigh 1; captures add the captured piece's value in pawns and promotions eight.
+	private int playWeighted(ChessMatch match, MoveList moves, int[] weights, SplittableRandom random) {
+		moves.clear();
+		match.generateLegalMoves(moves);
+		if (moves.isEmpty()) {
+			return Move.NONE;
+		}
+		int total = 0;
+		for (int i = 0; i < moves.size(); i++) {
+			int move = moves.get(i);
+			int weight = 1;
+			if (Move.isEnPassant(move)) {
+				weight += 1;
+			}
+			else if (Move.isCapture(move)) {
+				ChessPiece captured = match.pieceAt(Move.to(move));
+				weight += StaticExchange.VALUES[captured.getType().ordinal()] / 100;
+			}
+			if (Move.isPromotion(move)) {
+				weight += 8;
+			}
+			weights[i] = weight;
+			total += weight;
+		}
+		int pick = random.nextInt(total);
+		int i = 0;
+		while (pick >= weights[i]) {
+			pick -= weights[i++];
+		}
+		match.makeMove(moves.get(i));
+		return moves.get(i);
+	}
+
+	private static Color opponent(Color color) {
+		return (color == Color.WHITE) ? Color.BLACK : Color.WHITE;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("%d games, %d plies, %.0f games/s", games, getPlies(), getGamesPerSecond()));
+		for (GameState state : GameState.values()) {
+			sb.append(", ").append(state).append(' ').append(getGames(state));
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,107 @@
+package chess.spectator;
+
+import boardgame.Piece;
+import chess.ChessPiece;
+
+/*
+ * Delta events are packed into a single int so the ring buffer holds no objects:
+ * bits 0-5 source square, 6-11 target square (row * 8 + column, a8 = 0),
+ * 12-14 captured piece type, 15-17 promotion piece type and 18-22 flags.
+ */
+public final class MoveEvent {
+
+	public static final int NONE = 0;
+	public static final int PAWN = 1;
+	public static final int KNIGHT = 2;
+	public static final int BISHOP = 3;
+	public static final int ROOK = 4;
+	public static final int QUEEN = 5;
+	public static final int KING = 6;
+
+	public static final int CHECK = 1 << 18;
+	public static final int CHECKMATE = 1 << 19;
+	public static final int CASTLING = 1 << 20;
+	public static final int EN_PASSANT = 1 << 21;
+	public static final int PROMOTION_REPLACED = 1 << 22;
+	public static final int TAKEBACK = 1 << 23;
+
+	private MoveEvent() {
+	}
+
+	public static int encode(int from, int to, int captured, int promotion, int flags) {
+		return from | (to << 6) | (captured << 12) | (promotion << 15) | flags;
+	}
+
+	public static int withPromotion(int event, int promotion) {
+		return (event & ~(0x7 << 15)) | (promotion << 15);
+	}
+
+	public static int from(int event) {
+		return event & 0x3F;
+	}
+
+	public static int to(int event) {
+		return (event >>> 6) & 0x3F;
+	}
+
+	public static int captured(int event) {
+		return (event >>> 12) & 0x7;
+	}
+
+	public static int promotion(int event) {
+		return (event >>> 15) & 0x7;
+	}
+
+	public static boolean isCheck(int event) {
+		return (event & CHECK) != 0;
+	}
+
+	public static boolean isCheckMate(int event) {
+		return (event & CHECKMATE) != 0;
+	}
+
+	public static boolean isCastling(int event) {
+		return (event & CASTLING) != 0;
+	}
+
+	public static boolean isEnPassant(int event) {
+		return (event & EN_PASSANT) != 0;
+	}
+
+	public static boolean isPromotionReplaced(int event) {
+		return (event & PROMOTION_REPLACED) != 0;
+	}
+
+	public static boolean isTakeback(int event) {
+		return (event & TAKEBACK) != 0;
+	}
+
+	public static int typeOf(Piece piece) {
+		if (piece == null) {
+			return NONE;
+		}
+		return ((ChessPiece)piece).getType().ordinal() + 1;
+	}
+
+	public static String toString(int event) {
+		StringBuilder sb = new StringBuilder();
+		if (isTakeback(event)) {
+			sb.append("takeback ");
+		}
+		sb.append(squareName(from(event))).append(squareName(to(event)));
+		if (promotion(event) != NONE) {
+			sb.append("=").append("PNBRQK".charAt(promotion(event) - 1));
+		}
+		if (isCheckMate(event)) {
+			sb.append("#");
+		}
+		else if (isCheck(event)) {
+			sb.append("+");
+		}
+		return sb.toString();
+	}
+
+	private static String squareName(int square) {
+		return "" + (char)('a' + square % 8) + (8 - square / 8);
+	}
+}
@@ -0,0 +1,92 @@
+package chess.spectator;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Single-writer ring buffer of move events. The match thread only ever writes into the
+ * ring and bumps the published sequence, so it never waits for a spectator. Each
+ * subscription keeps its own read cursor and is dropped when it lags more than maxLag
+ * events behind the writer.
+ */
+public class SpectatorFeed {
+
+	private final int[] ring;
+	private final int mask;
+	private final int maxLag;
+	private final AtomicLong published = new AtomicLong();
+	private final CopyOnWriteArrayList<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+	public SpectatorFeed(int capacity) {
+		this(capacity, capacity / 2);
+	}
+
+	public SpectatorFeed(int capacity, int maxLag) {
+		if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+			throw new IllegalArgumentException("Capacity must be a power of two");
+		}
+		// a reader capacity events behind may find its slot already refilled by the writer
+		if (maxLag < 1 || maxLag >= capacity) {
+			throw new IllegalArgumentException("Max lag must be at least 1 and below the capacity");
+		}
+		ring = new int[capacity];
+		mask = capacity - 1;
+		this.maxLag = maxLag;
+	}
+
+	public int getCapacity() {
+		return ring.length;
+	}
+
+	public int getMaxLag() {
+		return maxLag;
+	}
+
+	public int getSubscriberCount() {
+		return subscriptions.size();
+	}
+
+	long getPublished() {
+		return published.get();
+	}
+
+	int read(long sequence) {
+		return ring[(int)(sequence & mask)];
+	}
+
+	public void publish(int event) {
+		long sequence = published.get();
+		// the previous publish must be visible before the slot is refilled, for the readers' lap check
+		VarHandle.releaseFence();
+		ring[(int)(sequence & mask)] = event;
+		published.lazySet(sequence + 1);
+	}
+
+	// New subscribers only see events published after they joined.
+	public Subscription subscribe(SpectatorListener listener) {
+		Subscription subscription = new Subscription(this, listener, published.get());
+		subscriptions.add(subscription);
+		return subscription;
+	}
+
+	void remove(Subscription subscription) {
+		subscriptions.remove(subscription);
+	}
+
+	// Drops every subscriber, whose listeners hear of it on the calling thread; used when the match is reset.
+	public void dropAll() {
+		for (Subscription s : subscriptions) {
+			s.drop();
+		}
+	}
+
+	// Pushes pending events to every subscriber; meant to be driven by broadcaster threads, not the match thread.
+	public int dispatch() {
+		int delivered = 0;
+		for (Subscription s : subscriptions) {
+			delivered += s.poll();
+		}
+		return delivered;
+	}
+}
@@ -0,0 +1,9 @@
+package chess.spectator;
+
+public interface SpectatorListener {
+
+	void onMove(int event);
+	
+	default void onDropped() {
+	}
+}
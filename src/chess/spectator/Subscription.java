@@ -0,0 +1,73 @@
+package chess.spectator;
+
+import java.lang.invoke.VarHandle;
+
+public class Subscription {
+
+	private final SpectatorFeed feed;
+	private final SpectatorListener listener;
+	private long cursor;
+	private volatile boolean dropped;
+	private volatile boolean closed;
+
+	Subscription(SpectatorFeed feed, SpectatorListener listener, long cursor) {
+		this.feed = feed;
+		this.listener = listener;
+		this.cursor = cursor;
+	}
+
+	public boolean isDropped() {
+		return dropped;
+	}
+
+	public boolean isActive() {
+		return !dropped && !closed;
+	}
+
+	public long getLag() {
+		return feed.getPublished() - cursor;
+	}
+
+	public void close() {
+		closed = true;
+		feed.remove(this);
+	}
+
+	// Delivers every pending event to the listener. Only one thread may poll a subscription at a time.
+	public synchronized int poll() {
+		if (!isActive()) {
+			return 0;
+		}
+		long available = feed.getPublished();
+		if (available - cursor > feed.getMaxLag()) {
+			drop();
+			return 0;
+		}
+		int delivered = 0;
+		while (cursor < available) {
+			int event = feed.read(cursor);
+			// the writer fills slot cursor again for sequence cursor + capacity before it publishes
+			// that sequence, so once it is capacity ahead the slot we read may already be overwritten;
+			// the fence keeps the plain slot read ahead of the recheck
+			VarHandle.acquireFence();
+			if (feed.getPublished() - cursor >= feed.getCapacity()) {
+				drop();
+				return delivered;
+			}
+			cursor++;
+			listener.onMove(event);
+			delivered++;
+		}
+		return delivered;
+	}
+
+	// Also called by SpectatorFeed.dropAll(), so it waits for a poll in progress and drops only once.
+	synchronized void drop() {
+		if (!isActive()) {
+			return;
+		}
+		dropped = true;
+		feed.remove(this);
+		listener.onDropped();
+	}
+}